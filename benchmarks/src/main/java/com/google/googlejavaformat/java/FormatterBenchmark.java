@@ -0,0 +1,228 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.io.Resources;
+import com.google.googlejavaformat.CommentsHelper;
+import com.google.googlejavaformat.Doc;
+import com.google.googlejavaformat.DocBuilder;
+import com.google.googlejavaformat.Newlines;
+import com.google.googlejavaformat.Op;
+import com.google.googlejavaformat.OpsBuilder;
+import com.google.googlejavaformat.java.JavaFormatterOptions.Style;
+import com.google.googlejavaformat.java.javadoc.JavadocFormatter;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for each phase of the formatter, over the inputs in {@code corpus/}.
+ *
+ * <p>Each benchmark measures a single phase. It starts from the results of the earlier phases,
+ * which {@link #setUp} computes once per input. Run with {@code -prof gc} to also report allocation
+ * rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {
+      "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED",
+    })
+public class FormatterBenchmark {
+
+  private static final Pattern JAVADOC = Pattern.compile("/\\*\\*.*?\\*/", Pattern.DOTALL);
+
+  /** The name of an input in {@code corpus/}. */
+  @Param({"small", "medium", "pathological", "javadoc"})
+  public String input;
+
+  private final JavaFormatterOptions options = JavaFormatterOptions.defaultOptions();
+  private final Formatter formatter = new Formatter(options);
+
+  private String text;
+  private String lineSeparator;
+  private JavaInput javaInput;
+  private JCCompilationUnit unit;
+  private CommentsHelper commentsHelper;
+  private ImmutableList<Op> ops;
+  private Doc doc;
+  private JavaOutput javaOutput;
+  private RangeSet<Integer> tokenRanges;
+  private ImmutableList<Range<Integer>> lineRanges;
+  private String formatted;
+  private ImmutableList<String> javadocs;
+
+  @Setup
+  public void setUp() throws Exception {
+    text =
+        Resources.toString(
+            Resources.getResource(FormatterBenchmark.class, "corpus/" + input + ".input"), UTF_8);
+    lineSeparator = Newlines.guessLineSeparator(text);
+    javaInput = new JavaInput(text);
+    unit = Formatter.parse(javaInput);
+    ImmutableSet.Builder<Integer> markdownJavadocPositions = ImmutableSet.builder();
+    ops = buildOps(markdownJavadocPositions);
+    commentsHelper =
+        new JavaCommentsHelper(lineSeparator, options, markdownJavadocPositions.build());
+    doc = new DocBuilder().withOps(ops).build();
+    doc.computeBreaks(commentsHelper, Formatter.MAX_LINE_LENGTH, new Doc.State(+0, 0));
+    javaOutput = write();
+    tokenRanges =
+        javaInput.characterRangesToTokenRanges(
+            ImmutableList.of(Range.closedOpen(0, text.length())));
+    ImmutableList.Builder<Range<Integer>> lineRanges = ImmutableList.builder();
+    Iterator<Integer> lineOffsets = Newlines.lineOffsetIterator(text);
+    int lineStart = lineOffsets.next();
+    while (lineOffsets.hasNext()) {
+      int nextLineStart = lineOffsets.next();
+      lineRanges.add(Range.closedOpen(lineStart, nextLineStart));
+      lineStart = nextLineStart;
+    }
+    this.lineRanges = lineRanges.build();
+    formatted = formatter.formatSource(text);
+    ImmutableList.Builder<String> javadocs = ImmutableList.builder();
+    Matcher matcher = JAVADOC.matcher(text);
+    while (matcher.find()) {
+      javadocs.add(matcher.group());
+    }
+    this.javadocs = javadocs.build();
+  }
+
+  private ImmutableList<Op> buildOps(ImmutableSet.Builder<Integer> markdownJavadocPositions) {
+    OpsBuilder builder = new OpsBuilder(javaInput, newOutput());
+    new JavaInputAstVisitor(builder, options.indentationMultiplier(), markdownJavadocPositions)
+        .scan(unit, null);
+    builder.sync(text.length());
+    builder.drain();
+    return builder.build();
+  }
+
+  private JavaOutput newOutput() {
+    return new JavaOutput(
+        lineSeparator,
+        javaInput,
+        new JavaCommentsHelper(lineSeparator, options, ImmutableSet.of()));
+  }
+
+  private JavaOutput write() {
+    JavaOutput output = newOutput();
+    doc.write(output);
+    output.flush();
+    return output;
+  }
+
+  /** Lexing, in the {@link JavaInput} constructor. */
+  @Benchmark
+  public JavaInput lex() throws FormatterException {
+    return new JavaInput(text);
+  }
+
+  @Benchmark
+  public JCCompilationUnit parse() throws FormatterException {
+    return Trees.parse(text, /* allowStringFolding= */ false);
+  }
+
+  /** Building the {@link Op}s for the compilation unit, with {@link JavaInputAstVisitor}. */
+  @Benchmark
+  public ImmutableList<Op> buildOps() {
+    return buildOps(ImmutableSet.builder());
+  }
+
+  @Benchmark
+  public Doc buildDoc() {
+    return new DocBuilder().withOps(ops).build();
+  }
+
+  @Benchmark
+  public Doc.State computeBreaks() {
+    return doc.computeBreaks(commentsHelper, Formatter.MAX_LINE_LENGTH, new Doc.State(+0, 0));
+  }
+
+  /** Writing the {@link Doc} to a {@link JavaOutput}. */
+  @Benchmark
+  public JavaOutput writeDoc() {
+    return write();
+  }
+
+  /** Converting a character range for each line to token ranges, as for {@code --lines}. */
+  @Benchmark
+  public RangeSet<Integer> characterRangesToTokenRanges() throws FormatterException {
+    return javaInput.characterRangesToTokenRanges(lineRanges);
+  }
+
+  @Benchmark
+  public ImmutableList<Replacement> getFormatReplacements() {
+    return javaOutput.getFormatReplacements(tokenRanges);
+  }
+
+  @Benchmark
+  public String reorderImports() throws FormatterException {
+    return ImportOrderer.reorderImports(text, Style.GOOGLE);
+  }
+
+  @Benchmark
+  public String removeUnusedImports() throws FormatterException {
+    return RemoveUnusedImports.removeUnusedImports(text);
+  }
+
+  /** Reflowing long strings in the formatted input. */
+  @Benchmark
+  public String wrapStrings() throws FormatterException {
+    return StringWrapper.wrap(Formatter.MAX_LINE_LENGTH, formatted, formatter);
+  }
+
+  /** Formatting every javadoc comment in the input. */
+  @Benchmark
+  public void formatJavadoc(Blackhole blackhole) {
+    for (String javadoc : javadocs) {
+      blackhole.consume(JavadocFormatter.formatJavadoc(javadoc, /* blockIndent= */ 2));
+    }
+  }
+
+  /** All of the phases, as run by the command-line formatter. */
+  @Benchmark
+  public String formatSourceAndFixImports() throws FormatterException {
+    return formatter.formatSourceAndFixImports(text);
+  }
+}
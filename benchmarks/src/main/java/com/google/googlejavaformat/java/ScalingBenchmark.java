@@ -0,0 +1,172 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.CharSink;
+import com.google.common.io.CharSource;
+import com.google.common.io.CharStreams;
+import com.google.googlejavaformat.CommentsHelper;
+import com.google.googlejavaformat.Doc;
+import com.google.googlejavaformat.DocBuilder;
+import com.google.googlejavaformat.Newlines;
+import com.google.googlejavaformat.OpsBuilder;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for how the formatter scales with the size of its input, over synthetic inputs of
+ * about 1k to 1M tokens. The time per token should stay about the same as the inputs grow.
+ *
+ * <p>The inputs are each a single large construct: a method chain, an array initializer, a binary
+ * expression, or a method call's arguments. They are parsed and visited recursively, so the
+ * benchmark runs with a large stack.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {
+      "-Xss1g",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED",
+    })
+public class ScalingBenchmark {
+
+  /** The shape of the input. */
+  public enum Shape {
+    /** {@code builder().m0(0).m1(1)...} */
+    CHAIN(6, "class T { Object f() { return builder()", "; } }") {
+      @Override
+      void append(StringBuilder sb, int i) {
+        sb.append(".m").append(i).append('(').append(i).append(')');
+      }
+    },
+    /** {@code {0, 1, ...}} */
+    ARRAY(2, "class T { int[] a = {", "}; }") {
+      @Override
+      void append(StringBuilder sb, int i) {
+        sb.append(i).append(", ");
+      }
+    },
+    /** {@code x0 + x1 + ...} */
+    SUM(2, "class T { int a = x0", "; }") {
+      @Override
+      void append(StringBuilder sb, int i) {
+        sb.append(" + x").append(i + 1);
+      }
+    },
+    /** {@code g(a0, a1, ...)} */
+    ARGS(2, "class T { void f() { g(a0", "); } }") {
+      @Override
+      void append(StringBuilder sb, int i) {
+        sb.append(", a").append(i + 1);
+      }
+    };
+
+    private final int tokensPerItem;
+    private final String prefix;
+    private final String suffix;
+
+    Shape(int tokensPerItem, String prefix, String suffix) {
+      this.tokensPerItem = tokensPerItem;
+      this.prefix = prefix;
+      this.suffix = suffix;
+    }
+
+    abstract void append(StringBuilder sb, int i);
+
+    /** Returns an input of this shape, with about the given number of tokens. */
+    String input(int tokens) {
+      StringBuilder sb = new StringBuilder(prefix);
+      for (int i = 0; i < tokens / tokensPerItem; i++) {
+        append(sb, i);
+      }
+      return sb.append(suffix).toString();
+    }
+  }
+
+  @Param({"CHAIN", "ARRAY", "SUM", "ARGS"})
+  public Shape shape;
+
+  /** The approximate number of tokens in the input. */
+  @Param({"1000", "10000", "100000", "1000000"})
+  public int tokens;
+
+  private static final CharSink NULL_SINK =
+      new CharSink() {
+        @Override
+        public Writer openStream() {
+          return CharStreams.nullWriter();
+        }
+      };
+
+  private final JavaFormatterOptions options = JavaFormatterOptions.defaultOptions();
+  private final Formatter formatter = new Formatter(options);
+
+  private String text;
+  private CommentsHelper commentsHelper;
+  private Doc doc;
+
+  @Setup
+  public void setUp() throws Exception {
+    text = shape.input(tokens);
+    String lineSeparator = Newlines.guessLineSeparator(text);
+    JavaInput javaInput = new JavaInput(text);
+    commentsHelper = new JavaCommentsHelper(lineSeparator, options, ImmutableSet.of());
+    OpsBuilder builder =
+        new OpsBuilder(javaInput, new JavaOutput(lineSeparator, javaInput, commentsHelper));
+    new JavaInputAstVisitor(builder, options.indentationMultiplier(), ImmutableSet.builder())
+        .scan(Formatter.parse(javaInput), null);
+    builder.sync(text.length());
+    builder.drain();
+    doc = new DocBuilder().withOps(builder.build()).build();
+  }
+
+  @Benchmark
+  public Doc.State computeBreaks() {
+    return doc.computeBreaks(commentsHelper, Formatter.MAX_LINE_LENGTH, new Doc.State(+0, 0));
+  }
+
+  @Benchmark
+  public String formatSource() throws FormatterException {
+    return formatter.formatSource(text);
+  }
+
+  /** Like {@link #formatSource}, but streaming the output instead of building it as a string. */
+  @Benchmark
+  public void formatSourceToSink() throws FormatterException, IOException {
+    formatter.formatSource(CharSource.wrap(text), NULL_SINK);
+  }
+}
@@ -14,20 +14,20 @@
 
 package com.google.googlejavaformat;
 
-import static com.google.common.collect.Iterables.getLast;
 import static com.google.googlejavaformat.CommentsHelper.reformatParameterComment;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 import com.google.common.base.MoreObjects;
-import com.google.common.base.Supplier;
-import com.google.common.base.Suppliers;
-import com.google.common.collect.DiscreteDomain;
-import com.google.common.collect.Iterators;
-import com.google.common.collect.Range;
 import com.google.googlejavaformat.Output.BreakTag;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import org.jspecify.annotations.Nullable;
 
 /**
  * {@link com.google.googlejavaformat.java.JavaInputAstVisitor JavaInputAstVisitor} outputs a
@@ -88,16 +88,15 @@ public abstract class Doc {
     }
   }
 
-  private static final Range<Integer> EMPTY_RANGE = Range.closedOpen(-1, -1);
-  private static final DiscreteDomain<Integer> INTEGERS = DiscreteDomain.integers();
+  /** The {@link #rangeLo} and {@link #rangeHi} of a {@code Doc} with no {@link Input.Tok}s. */
+  private static final int NO_TOKS = -1;
 
-  private final Supplier<Integer> width = Suppliers.memoize(this::computeWidth);
+  // Memoized width, or -1 if not computed yet. There are a lot of Docs, so these are plain fields
+  // rather than memoizing suppliers.
+  private int width = -1;
 
   // Memoized flat; not defined (and never computed) if contains forced breaks.
-  private final Supplier<String> flat = Suppliers.memoize(this::computeFlat);
-
-  // Memoized Range.
-  private final Supplier<Range<Integer>> range = Suppliers.memoize(this::computeRange);
+  private @Nullable String flat;
 
   /**
    * Return the width of a {@code Doc}.
@@ -105,7 +104,10 @@ public abstract class Doc {
    * @return the width
    */
   final int getWidth() {
-    return width.get();
+    if (width < 0) {
+      width = computeWidth();
+    }
+    return width;
   }
 
   /**
@@ -115,16 +117,10 @@ public abstract class Doc {
    * @return the flat-string value
    */
   final String getFlat() {
-    return flat.get();
-  }
-
-  /**
-   * Return the {@link Range} of a {@code Doc}.
-   *
-   * @return the {@code Doc}'s {@link Range}
-   */
-  final Range<Integer> range() {
-    return range.get();
+    if (flat == null) {
+      flat = computeFlat();
+    }
+    return flat;
   }
 
   /**
@@ -142,11 +138,16 @@ public abstract class Doc {
   abstract String computeFlat();
 
   /**
-   * Compute the {@code Doc}'s {@link Range} of {@link Input.Token}s.
-   *
-   * @return the {@link Range}
+   * Return the index of the first {@link Input.Tok} in the {@code Doc}, or {@code -1} if there are
+   * none. Together with {@link #rangeHi}, this is the half-open range of {@code Tok} indices.
+   */
+  abstract int rangeLo();
+
+  /**
+   * Return one more than the index of the last {@link Input.Tok} in the {@code Doc}, or {@code -1}
+   * if there are none.
    */
-  abstract Range<Integer> computeRange();
+  abstract int rangeHi();
 
   /**
    * Make breaking decisions for a {@code Doc}.
@@ -160,6 +161,21 @@ public abstract class Doc {
   /** Write a {@code Doc} to an {@link Output}, after breaking decisions have been made. */
   public abstract void write(Output output);
 
+  /** Returns the number of {@code Doc}s in this tree, including this one. */
+  public final int countDocs() {
+    int count = 0;
+    Deque<Doc> stack = new ArrayDeque<>();
+    stack.push(this);
+    while (!stack.isEmpty()) {
+      Doc doc = stack.pop();
+      count++;
+      if (doc instanceof Level level) {
+        level.docs.forEach(stack::push);
+      }
+    }
+    return count;
+  }
+
   /** A {@code Level} inside a {@link Doc}. */
   static final class Level extends Doc {
     private final Indent plusIndent; // The extra indent following breaks.
@@ -188,27 +204,90 @@ public abstract class Doc {
       docs.add(doc);
     }
 
+    // Generated code can nest Levels very deeply, e.g. for long chains of binary operators, so the
+    // methods below walk the tree with explicit stacks instead of recursing.
+
     @Override
     int computeWidth() {
+      // Memoize the widths of the nested Levels first, innermost first, so that each one is summed
+      // from its children's memoized widths.
+      List<Level> levels = new ArrayList<>();
+      Deque<Level> stack = new ArrayDeque<>();
+      stack.push(this);
+      while (!stack.isEmpty()) {
+        for (Doc doc : stack.pop().docs) {
+          if (doc instanceof Level level && doc.width < 0) {
+            levels.add(level);
+            stack.push(level);
+          }
+        }
+      }
+      for (int i = levels.size() - 1; i >= 0; i--) {
+        Level level = levels.get(i);
+        Doc doc = level;
+        doc.width = getWidth(level.docs);
+      }
       return getWidth(docs);
     }
 
     @Override
     String computeFlat() {
       StringBuilder builder = new StringBuilder();
-      for (Doc doc : docs) {
-        builder.append(doc.getFlat());
-      }
+      forEachLeaf(doc -> builder.append(doc.getFlat()));
       return builder.toString();
     }
 
     @Override
-    Range<Integer> computeRange() {
-      Range<Integer> docRange = EMPTY_RANGE;
-      for (Doc doc : docs) {
-        docRange = union(docRange, doc.range());
+    int rangeLo() {
+      computeRange();
+      return rangeLo;
+    }
+
+    @Override
+    int rangeHi() {
+      computeRange();
+      return rangeHi;
+    }
+
+    // Memoized range; rangeHi is 0 until computed, which is never a valid value.
+    private int rangeLo;
+    private int rangeHi;
+
+    private void computeRange() {
+      if (rangeHi != 0) {
+        return;
+      }
+      rangeLo = NO_TOKS;
+      rangeHi = NO_TOKS;
+      forEachLeaf(
+          doc -> {
+            int docLo = doc.rangeLo();
+            if (docLo != NO_TOKS) {
+              rangeLo = rangeLo == NO_TOKS ? docLo : min(rangeLo, docLo);
+              rangeHi = max(rangeHi, doc.rangeHi());
+            }
+          });
+    }
+
+    /**
+     * Calls {@code action} on each {@link Doc} in this tree that isn't a {@code Level}, in order.
+     */
+    private void forEachLeaf(Consumer<Doc> action) {
+      Deque<Iterator<Doc>> stack = new ArrayDeque<>();
+      stack.push(docs.iterator());
+      while (!stack.isEmpty()) {
+        Iterator<Doc> it = stack.peek();
+        if (!it.hasNext()) {
+          stack.pop();
+          continue;
+        }
+        Doc doc = it.next();
+        if (doc instanceof Level level) {
+          stack.push(level.docs.iterator());
+        } else {
+          action.accept(doc);
+        }
       }
-      return docRange;
     }
 
     // State that needs to be preserved between calculating breaks and
@@ -218,110 +297,133 @@ public abstract class Doc {
     /** True if the entire {@link Level} fits on one line. */
     boolean oneLine = false;
 
-    /**
-     * Groups of {@link Doc}s that are children of the current {@link Level}, separated by {@link
-     * Break}s.
-     */
-    List<List<Doc>> splits = new ArrayList<>();
+    /** A {@link Level} that spans multiple lines, whose breaks are being computed. */
+    private static final class BrokenLevel {
+      final Level level;
+      final State outer; // The state before the level.
+      int next; // The index of the next child to lay out.
+      boolean enoughRoom; // Whether the current split fits on the rest of the line.
 
-    /** {@link Break}s between {@link Doc}s in the current {@link Level}. */
-    List<Break> breaks = new ArrayList<>();
+      BrokenLevel(Level level, State outer) {
+        this.level = level;
+        this.outer = outer;
+      }
 
-    @Override
-    public State computeBreaks(CommentsHelper commentsHelper, int maxWidth, State state) {
-      int thisWidth = getWidth();
-      if (state.column + thisWidth <= maxWidth) {
-        oneLine = true;
-        return state.withColumn(state.column + thisWidth);
+      /** Starts laying out the level. */
+      State start(int maxWidth) {
+        return startSplit(
+            maxWidth, new State(outer.indent + level.plusIndent.eval(), outer.column), null);
       }
-      State broken =
-          computeBroken(
-              commentsHelper, maxWidth, new State(state.indent + plusIndent.eval(), state.column));
-      return state.withColumn(broken.column);
-    }
 
-    private static void splitByBreaks(List<Doc> docs, List<List<Doc>> splits, List<Break> breaks) {
-      splits.clear();
-      breaks.clear();
-      splits.add(new ArrayList<>());
-      for (Doc doc : docs) {
-        if (doc instanceof Break b) {
-          breaks.add(b);
-          splits.add(new ArrayList<>());
-        } else {
-          getLast(splits).add(doc);
+      /**
+       * Starts laying out the split at {@link #next}, after deciding whether to take the {@link
+       * Break} before it, if there is one.
+       */
+      State startSplit(int maxWidth, State state, @Nullable Break breakDoc) {
+        int splitWidth = level.splitWidth(next);
+        if (breakDoc != null) {
+          boolean shouldBreak =
+              breakDoc.fillMode == FillMode.UNIFIED
+                  || state.mustBreak
+                  || state.column + breakDoc.getWidth() + splitWidth > maxWidth;
+          state = breakDoc.computeBreaks(state, state.lastIndent, shouldBreak);
         }
+        enoughRoom = state.column + splitWidth <= maxWidth;
+        return state.withMustBreak(false);
       }
-    }
 
-    /** Compute breaks for a {@link Level} that spans multiple lines. */
-    private State computeBroken(CommentsHelper commentsHelper, int maxWidth, State state) {
-      splitByBreaks(docs, splits, breaks);
+      /** Finishes laying out the current split. */
+      State endSplit(State state) {
+        return enoughRoom ? state : state.withMustBreak(true); // Break after, too.
+      }
+    }
 
-      state =
-          computeBreakAndSplit(
-              commentsHelper, maxWidth, state, /* optBreakDoc= */ Optional.empty(), splits.get(0));
+    /**
+     * Returns true, and marks the level as {@link #oneLine}, if it fits on the rest of the line.
+     */
+    private boolean fits(int maxWidth, State state) {
+      oneLine = state.column + getWidth() <= maxWidth;
+      return oneLine;
+    }
 
-      // Handle following breaks and split.
-      for (int i = 0; i < breaks.size(); i++) {
-        state =
-            computeBreakAndSplit(
-                commentsHelper, maxWidth, state, Optional.of(breaks.get(i)), splits.get(i + 1));
-      }
-      return state;
-    }
-
-    /** Lay out a Break-separated group of Docs in the current Level. */
-    private static State computeBreakAndSplit(
-        CommentsHelper commentsHelper,
-        int maxWidth,
-        State state,
-        Optional<Break> optBreakDoc,
-        List<Doc> split) {
-      int breakWidth = optBreakDoc.isPresent() ? optBreakDoc.get().getWidth() : 0;
-      int splitWidth = getWidth(split);
-      boolean shouldBreak =
-          (optBreakDoc.isPresent() && optBreakDoc.get().fillMode == FillMode.UNIFIED)
-              || state.mustBreak
-              || state.column + breakWidth + splitWidth > maxWidth;
-
-      if (optBreakDoc.isPresent()) {
-        state = optBreakDoc.get().computeBreaks(state, state.lastIndent, shouldBreak);
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the level doesn't fit on one line, it is laid out as a sequence of splits separated by
+     * {@link Break}s. The width of each split is measured when the layout reaches its start, so
+     * every child is visited at most twice and the work is linear in the size of the tree.
+     */
+    @Override
+    public State computeBreaks(CommentsHelper commentsHelper, int maxWidth, State state) {
+      if (fits(maxWidth, state)) {
+        return state.withColumn(state.column + getWidth());
       }
-      boolean enoughRoom = state.column + splitWidth <= maxWidth;
-      state = computeSplit(commentsHelper, maxWidth, split, state.withMustBreak(false));
-      if (!enoughRoom) {
-        state = state.withMustBreak(true); // Break after, too.
+      Deque<BrokenLevel> stack = new ArrayDeque<>();
+      BrokenLevel current = new BrokenLevel(this, state);
+      state = current.start(maxWidth);
+      while (true) {
+        List<Doc> docs = current.level.docs;
+        if (current.next == docs.size()) {
+          state = current.outer.withColumn(current.endSplit(state).column);
+          if (stack.isEmpty()) {
+            return state;
+          }
+          current = stack.pop();
+          continue;
+        }
+        Doc doc = docs.get(current.next++);
+        if (doc instanceof Break breakDoc) {
+          state = current.startSplit(maxWidth, current.endSplit(state), breakDoc);
+        } else if (doc instanceof Level level) {
+          if (level.fits(maxWidth, state)) {
+            state = state.withColumn(state.column + level.getWidth());
+          } else {
+            stack.push(current);
+            current = new BrokenLevel(level, state);
+            state = current.start(maxWidth);
+          }
+        } else {
+          state = doc.computeBreaks(commentsHelper, maxWidth, state);
+        }
       }
-      return state;
     }
 
-    private static State computeSplit(
-        CommentsHelper commentsHelper, int maxWidth, List<Doc> docs, State state) {
-      for (Doc doc : docs) {
-        state = doc.computeBreaks(commentsHelper, maxWidth, state);
+    /** Returns the width of the split of {@link Doc}s starting at {@code start}. */
+    private int splitWidth(int start) {
+      int width = 0;
+      for (int i = start; i < docs.size(); i++) {
+        Doc doc = docs.get(i);
+        if (doc instanceof Break) {
+          break;
+        }
+        width += doc.getWidth();
+        if (width >= MAX_LINE_WIDTH) {
+          return MAX_LINE_WIDTH; // Paranoid overflow protection
+        }
       }
-      return state;
+      return width;
     }
 
     @Override
     public void write(Output output) {
       if (oneLine) {
-        output.append(getFlat(), range()); // This is defined because width is finite.
-      } else {
-        writeFilled(output);
-      }
-    }
-
-    private void writeFilled(Output output) {
-      // Handle first split.
-      for (Doc doc : splits.get(0)) {
-        doc.write(output);
+        // This is defined because width is finite.
+        output.append(getFlat(), rangeLo(), rangeHi());
+        return;
       }
-      // Handle following breaks and split.
-      for (int i = 0; i < breaks.size(); i++) {
-        breaks.get(i).write(output);
-        for (Doc doc : splits.get(i + 1)) {
+      // The breaks were decided by computeBreaks, and write themselves.
+      Deque<Iterator<Doc>> stack = new ArrayDeque<>();
+      stack.push(docs.iterator());
+      while (!stack.isEmpty()) {
+        Iterator<Doc> it = stack.peek();
+        if (!it.hasNext()) {
+          stack.pop();
+          continue;
+        }
+        Doc doc = it.next();
+        if (doc instanceof Level level && !level.oneLine) {
+          stack.push(level.docs.iterator());
+        } else {
           doc.write(output);
         }
       }
@@ -345,10 +447,6 @@ public abstract class Doc {
       return width;
     }
 
-    private static Range<Integer> union(Range<Integer> x, Range<Integer> y) {
-      return x.isEmpty() ? y : y.isEmpty() ? x : x.span(y).canonical(INTEGERS);
-    }
-
     @Override
     public String toString() {
       return MoreObjects.toStringHelper(this)
@@ -457,19 +555,24 @@ public abstract class Doc {
     }
 
     @Override
-    Range<Integer> computeRange() {
-      return Range.singleton(token.getTok().getIndex()).canonical(INTEGERS);
+    int rangeLo() {
+      return token.getTok().getIndex();
+    }
+
+    @Override
+    int rangeHi() {
+      return token.getTok().getIndex() + 1;
     }
 
     @Override
     public State computeBreaks(CommentsHelper commentsHelper, int maxWidth, State state) {
-      return state.withColumn(state.column + computeWidth());
+      return state.withColumn(state.column + getWidth());
     }
 
     @Override
     public void write(Output output) {
       String text = token.getTok().getOriginalText();
-      output.append(text, range());
+      output.append(text, rangeLo(), rangeHi());
     }
 
     @Override
@@ -513,8 +616,13 @@ public abstract class Doc {
     }
 
     @Override
-    Range<Integer> computeRange() {
-      return EMPTY_RANGE;
+    int rangeLo() {
+      return NO_TOKS;
+    }
+
+    @Override
+    int rangeHi() {
+      return NO_TOKS;
     }
 
     @Override
@@ -524,7 +632,7 @@ public abstract class Doc {
 
     @Override
     public void write(Output output) {
-      output.append(" ", range());
+      output.append(" ", NO_TOKS, NO_TOKS);
     }
 
     @Override
@@ -616,8 +724,13 @@ public abstract class Doc {
     }
 
     @Override
-    Range<Integer> computeRange() {
-      return EMPTY_RANGE;
+    int rangeLo() {
+      return NO_TOKS;
+    }
+
+    @Override
+    int rangeHi() {
+      return NO_TOKS;
     }
 
     /** Was this break taken? */
@@ -654,10 +767,10 @@ public abstract class Doc {
     @Override
     public void write(Output output) {
       if (broken) {
-        output.append("\n", EMPTY_RANGE);
+        output.append("\n", NO_TOKS, NO_TOKS);
         output.indent(newIndent);
       } else {
-        output.append(flat, range());
+        output.append(flat, NO_TOKS, NO_TOKS);
       }
     }
 
@@ -724,8 +837,13 @@ public abstract class Doc {
     }
 
     @Override
-    Range<Integer> computeRange() {
-      return Range.singleton(tok.getIndex()).canonical(INTEGERS);
+    int rangeLo() {
+      return tok.getIndex();
+    }
+
+    @Override
+    int rangeHi() {
+      return tok.getIndex() + 1;
     }
 
     String text;
@@ -733,13 +851,13 @@ public abstract class Doc {
     @Override
     public State computeBreaks(CommentsHelper commentsHelper, int maxWidth, State state) {
       text = commentsHelper.rewrite(tok, maxWidth, state.column);
-      int firstLineLength = text.length() - Iterators.getLast(Newlines.lineOffsetIterator(text));
+      int firstLineLength = text.length() - Newlines.lastLineStart(text);
       return state.withColumn(state.column + firstLineLength);
     }
 
     @Override
     public void write(Output output) {
-      output.append(text, range());
+      output.append(text, rangeLo(), rangeHi());
     }
 
     @Override
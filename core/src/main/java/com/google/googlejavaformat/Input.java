@@ -16,8 +16,7 @@ package com.google.googlejavaformat;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableRangeMap;
+import org.jspecify.annotations.Nullable;
 
 /** An input to the formatter. */
 public abstract class Input extends InputOutput {
@@ -104,10 +103,18 @@ public abstract class Input extends InputOutput {
    */
   public abstract ImmutableList<? extends Token> getTokens();
 
-  /** A map from [start, end] position ranges to {@link Token}s. */
-  public abstract ImmutableRangeMap<Integer, ? extends Token> getPositionTokenMap();
+  /**
+   * Returns the {@link Token} whose [start, end] position range, including its {@link
+   * Token#getToksBefore} and {@link Token#getToksAfter}, contains the given position, or {@code
+   * null} if there is none.
+   */
+  public abstract @Nullable Token getPositionToken(int position);
 
-  public abstract ImmutableMap<Integer, Integer> getPositionToColumnMap();
+  /**
+   * Returns the {@code 0}-based column number of the {@link Tok} at the given position, or {@code
+   * -1} if no {@link Tok} starts there.
+   */
+  public abstract int getPositionColumn(int position);
 
   public abstract String getText();
 
@@ -56,16 +56,20 @@ public abstract class InputOutput {
   /** The {@link Range}s of the tokens or comments lying on each line, in any part. */
   protected final List<Range<Integer>> ranges = new ArrayList<>();
 
-  private static void addToRanges(List<Range<Integer>> ranges, int i, int k) {
+  private static void setRange(List<Range<Integer>> ranges, int i, int lo, int hi) {
     while (ranges.size() <= i) {
       ranges.add(EMPTY_RANGE);
     }
-    Range<Integer> oldValue = ranges.get(i);
-    ranges.set(i, Range.closedOpen(oldValue.isEmpty() ? k : oldValue.lowerEndpoint(), k + 1));
+    ranges.set(i, Range.closedOpen(lo, hi));
   }
 
   protected final void computeRanges(List<? extends Input.Tok> toks) {
+    // The toks are in order, so the lines they lie on only increase. Track the range of the current
+    // line as ints, and only create its Range once the toks move past it.
     int lineI = 0;
+    int currentLine = -1;
+    int lo = 0;
+    int hi = 0;
     for (Input.Tok tok : toks) {
       String txt = tok.getOriginalText();
       int lineI0 = lineI;
@@ -73,10 +77,20 @@ public abstract class InputOutput {
       int k = tok.getIndex();
       if (k >= 0) {
         for (int i = lineI0; i <= lineI; i++) {
-          addToRanges(ranges, i, k);
+          if (i != currentLine) {
+            if (currentLine >= 0) {
+              setRange(ranges, currentLine, lo, hi);
+            }
+            currentLine = i;
+            lo = k;
+          }
+          hi = k + 1;
         }
       }
     }
+    if (currentLine >= 0) {
+      setRange(ranges, currentLine, lo, hi);
+    }
   }
 
   /**
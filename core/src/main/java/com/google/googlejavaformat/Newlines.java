@@ -16,23 +16,58 @@ package com.google.googlejavaformat;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterators;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 /** Platform-independent newline handling. */
 public class Newlines {
 
+  // count, firstBreak and lastLineStart are called for every token, so they scan the input directly
+  // instead of using a LineOffsetIterator, which boxes each offset.
+
   /** Returns the number of line breaks in the input. */
   public static int count(String input) {
-    return Iterators.size(lineOffsetIterator(input)) - 1;
+    int count = 0;
+    for (int i = 0; i < input.length(); i++) {
+      switch (input.charAt(i)) {
+        case '\r' -> {
+          if (i + 1 < input.length() && input.charAt(i + 1) == '\n') {
+            i++;
+          }
+          count++;
+        }
+        case '\n' -> count++;
+        default -> {}
+      }
+    }
+    return count;
   }
 
   /** Returns the index of the first break in the input, or {@code -1}. */
   public static int firstBreak(String input) {
-    Iterator<Integer> it = lineOffsetIterator(input);
-    it.next();
-    return it.hasNext() ? it.next() : -1;
+    for (int i = 0; i < input.length(); i++) {
+      switch (input.charAt(i)) {
+        case '\r' -> {
+          return i + 1 < input.length() && input.charAt(i + 1) == '\n' ? i + 2 : i + 1;
+        }
+        case '\n' -> {
+          return i + 1;
+        }
+        default -> {}
+      }
+    }
+    return -1;
+  }
+
+  /** Returns the start offset of the last line in the input. */
+  public static int lastLineStart(String input) {
+    for (int i = input.length() - 1; i >= 0; i--) {
+      char c = input.charAt(i);
+      if (c == '\n' || c == '\r') {
+        return i + 1;
+      }
+    }
+    return 0;
   }
 
   private static final ImmutableSet<String> BREAKS = ImmutableSet.of("\r\n", "\n", "\r");
@@ -40,14 +40,14 @@ public final class OpsBuilder {
 
   /** Returns the actual size of the AST node at position, including comments. */
   public int actualSize(int position, int length) {
-    Token startToken = input.getPositionTokenMap().get(position);
+    Token startToken = input.getPositionToken(position);
     int start = startToken.getTok().getPosition();
     for (Tok tok : startToken.getToksBefore()) {
       if (tok.isComment()) {
         start = min(start, tok.getPosition());
       }
     }
-    Token endToken = input.getPositionTokenMap().get(position + length - 1);
+    Token endToken = input.getPositionToken(position + length - 1);
     int end = endToken.getTok().getPosition() + endToken.getTok().length();
     for (Tok tok : endToken.getToksAfter()) {
       if (tok.isComment()) {
@@ -59,7 +59,7 @@ public final class OpsBuilder {
 
   /** Returns the start column of the token at {@code position}, including leading comments. */
   public Integer actualStartColumn(int position) {
-    Token startToken = input.getPositionTokenMap().get(position);
+    Token startToken = input.getPositionToken(position);
     int start = startToken.getTok().getPosition();
     int line0 = input.getLineNumber(start);
     for (Tok tok : startToken.getToksBefore()) {
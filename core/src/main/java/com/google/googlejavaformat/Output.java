@@ -15,7 +15,6 @@
 package com.google.googlejavaformat;
 
 import com.google.common.base.MoreObjects;
-import com.google.common.collect.Range;
 import com.google.googlejavaformat.OpsBuilder.BlankLineWanted;
 import java.util.Optional;
 
@@ -51,9 +50,11 @@ public abstract class Output extends InputOutput {
    * Output a string.
    *
    * @param text the string
-   * @param range the {@link Range} corresponding to the string
+   * @param lo the index of the first {@link Input.Tok} corresponding to the string
+   * @param hi one more than the index of the last {@link Input.Tok} corresponding to the string; if
+   *     {@code lo == hi}, the string doesn't correspond to any {@code Tok}s
    */
-  public abstract void append(String text, Range<Integer> range);
+  public abstract void append(String text, int lo, int hi);
 
   /**
    * A blank line is or is not wanted here.
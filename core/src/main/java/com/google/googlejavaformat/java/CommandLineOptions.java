@@ -40,6 +40,13 @@ import java.util.Optional;
  * @param setExitIfChanged Return exit code 1 if there are any formatting changes.
  * @param assumeFilename Return the name to use for diagnostics when formatting standard input.
  * @param reorderModifiers Reorder modifiers into the JLS-recommended order.
+ * @param cacheDir A directory for caching the hashes of files that are already formatted.
+ * @param includes Globs selecting which files to format in directories given as {@code files}.
+ * @param excludes Globs selecting files to skip in directories given as {@code files}.
+ * @param threads The number of threads to format files on.
+ * @param ioThreads The maximum number of files to read or write concurrently.
+ * @param splitLargeFiles Format the top-level types of large files in parallel.
+ * @param stats Print statistics about where formatting time was spent.
  */
 record CommandLineOptions(
     ImmutableList<String> files,
@@ -59,7 +66,14 @@ record CommandLineOptions(
     Optional<String> assumeFilename,
     boolean reflowLongStrings,
     boolean formatJavadoc,
-    boolean reorderModifiers) {
+    boolean reorderModifiers,
+    Optional<String> cacheDir,
+    ImmutableList<String> includes,
+    ImmutableList<String> excludes,
+    Optional<Integer> threads,
+    Optional<Integer> ioThreads,
+    boolean splitLargeFiles,
+    boolean stats) {
 
   /** Returns true if partial formatting was selected. */
   boolean isSelection() {
@@ -80,7 +94,9 @@ record CommandLineOptions(
         .fixImportsOnly(false)
         .dryRun(false)
         .setExitIfChanged(false)
-        .inPlace(false);
+        .inPlace(false)
+        .splitLargeFiles(false)
+        .stats(false);
   }
 
   @AutoBuilder
@@ -134,6 +150,20 @@ record CommandLineOptions(
 
     Builder reorderModifiers(boolean reorderModifiers);
 
+    Builder cacheDir(String cacheDir);
+
+    ImmutableList.Builder<String> includesBuilder();
+
+    ImmutableList.Builder<String> excludesBuilder();
+
+    Builder threads(Integer threads);
+
+    Builder ioThreads(Integer ioThreads);
+
+    Builder splitLargeFiles(boolean splitLargeFiles);
+
+    Builder stats(boolean stats);
+
     CommandLineOptions build();
   }
 }
@@ -24,12 +24,14 @@ import com.google.common.collect.RangeSet;
 import com.google.common.collect.TreeRangeSet;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.regex.PatternSyntaxException;
 
 /** A parser for {@link CommandLineOptions}. */
 final class CommandLineOptionsParser {
@@ -85,6 +87,13 @@ final class CommandLineOptionsParser {
         case "--set-exit-if-changed" -> optionsBuilder.setExitIfChanged(true);
         case "-assume-filename", "--assume-filename" ->
             optionsBuilder.assumeFilename(getValue(flag, it, value));
+        case "--cache-dir" -> optionsBuilder.cacheDir(getValue(flag, it, value));
+        case "--include" -> optionsBuilder.includesBuilder().add(parseGlob(flag, it, value));
+        case "--exclude" -> optionsBuilder.excludesBuilder().add(parseGlob(flag, it, value));
+        case "--threads" -> optionsBuilder.threads(parseInteger(it, flag, value));
+        case "--io-threads" -> optionsBuilder.ioThreads(parseInteger(it, flag, value));
+        case "--split-large-files" -> optionsBuilder.splitLargeFiles(true);
+        case "--stats" -> optionsBuilder.stats(true);
         default -> throw new IllegalArgumentException("unexpected flag: " + flag);
       }
     }
@@ -101,6 +110,16 @@ final class CommandLineOptionsParser {
     }
   }
 
+  private static String parseGlob(String flag, Iterator<String> it, String value) {
+    String glob = getValue(flag, it, value);
+    try {
+      FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    } catch (PatternSyntaxException e) {
+      throw new IllegalArgumentException(String.format("invalid glob for %s: %s", flag, glob), e);
+    }
+    return glob;
+  }
+
   private static String getValue(String flag, Iterator<String> it, String value) {
     if (value != null) {
       return value;
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparing;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk record of file contents that are already formatted, so that repeated runs over mostly
+ * unchanged files (e.g. {@code --dry-run --set-exit-if-changed} in CI) can skip formatting them.
+ *
+ * <p>Each entry is an empty file named after a hash of the file contents, the formatter version,
+ * and every option that affects the output. Entries are created atomically and are never modified,
+ * so several processes can safely share a cache directory. A hit refreshes the entry's modification
+ * time, and {@link #evict} removes the least recently used entries once the cache holds more than
+ * its maximum number of entries.
+ */
+final class FormatCache {
+
+  static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+  private static final HashFunction HASH_FUNCTION = Hashing.sha256();
+
+  private final Path directory;
+  private final int maxEntries;
+  private final HashCode configuration;
+
+  private FormatCache(Path directory, int maxEntries, HashCode configuration) {
+    this.directory = directory;
+    this.maxEntries = maxEntries;
+    this.configuration = configuration;
+  }
+
+  /** Opens the cache in the given directory, creating the directory if necessary. */
+  static FormatCache create(
+      Path directory, int maxEntries, CommandLineOptions parameters, JavaFormatterOptions options)
+      throws IOException {
+    Files.createDirectories(directory);
+    HashCode configuration =
+        HASH_FUNCTION
+            .newHasher()
+            .putString(GoogleJavaFormatVersion.version(), UTF_8)
+            .putString(options.style().name(), UTF_8)
+            .putBoolean(options.formatJavadoc())
+            .putBoolean(options.reorderModifiers())
+            .putBoolean(parameters.fixImportsOnly())
+            .putBoolean(parameters.sortImports())
+            .putBoolean(parameters.removeUnusedImports())
+            .putBoolean(parameters.reflowLongStrings())
+            .hash();
+    return new FormatCache(directory, maxEntries, configuration);
+  }
+
+  /** Returns true if the given file contents are known to be formatted. */
+  boolean isFormatted(byte[] contents) {
+    Path entry = entry(contents);
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+      return true;
+    } catch (IOException e) {
+      // there is no entry, or it was concurrently evicted
+      return false;
+    }
+  }
+
+  /** Records that the given file contents are formatted. */
+  void markFormatted(byte[] contents) throws IOException {
+    try {
+      Files.createFile(entry(contents));
+    } catch (FileAlreadyExistsException e) {
+      // another process got there first
+    }
+  }
+
+  /** Removes the least recently used entries until at most the maximum number remain. */
+  void evict() throws IOException {
+    List<Path> entries = new ArrayList<>();
+    try (Stream<Path> stream = Files.list(directory)) {
+      stream.forEach(entries::add);
+    }
+    if (entries.size() <= maxEntries) {
+      return;
+    }
+    List<Entry> byAge = new ArrayList<>();
+    for (Path path : entries) {
+      try {
+        byAge.add(new Entry(path, Files.getLastModifiedTime(path)));
+      } catch (NoSuchFileException e) {
+        // concurrently evicted
+      }
+    }
+    byAge.sort(comparing(Entry::lastUsed));
+    for (int i = 0; i < byAge.size() - maxEntries; i++) {
+      Files.deleteIfExists(byAge.get(i).path());
+    }
+  }
+
+  private record Entry(Path path, FileTime lastUsed) {}
+
+  private Path entry(byte[] contents) {
+    return directory.resolve(
+        HASH_FUNCTION
+            .newHasher()
+            .putBytes(configuration.asBytes())
+            .putBytes(contents)
+            .hash()
+            .toString());
+  }
+}
@@ -14,12 +14,21 @@
 
 package com.google.googlejavaformat.java;
 
+import static com.google.googlejavaformat.java.Trees.getEndPosition;
+import static com.google.googlejavaformat.java.Trees.getStartPosition;
 import static java.util.Objects.requireNonNull;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import com.google.common.collect.TreeRangeSet;
+import com.google.googlejavaformat.Newlines;
+import com.google.googlejavaformat.java.FormatStats.Phase;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.Tree;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.concurrent.Callable;
 import org.jspecify.annotations.Nullable;
 
@@ -29,11 +38,16 @@ import org.jspecify.annotations.Nullable;
  */
 class FormatFileCallable implements Callable<FormatFileCallable.Result> {
 
+  /**
+   * The result of formatting a file. The output is null if the input couldn't be formatted, or if
+   * this is a {@code --dry-run} and the input is known to have changed.
+   */
   record Result(
       @Nullable Path path,
       String input,
       @Nullable String output,
-      @Nullable FormatterException exception) {
+      @Nullable FormatterException exception,
+      @Nullable FormatStats stats) {
     Result {
       requireNonNull(input, "input");
     }
@@ -47,7 +61,11 @@ class FormatFileCallable implements Callable<FormatFileCallable.Result> {
         String input,
         @Nullable String output,
         @Nullable FormatterException exception) {
-      return new Result(path, input, output, exception);
+      return new Result(path, input, output, exception, /* stats= */ null);
+    }
+
+    Result withStats(@Nullable FormatStats stats) {
+      return new Result(path, input, output, exception, stats);
     }
   }
 
@@ -56,35 +74,172 @@ class FormatFileCallable implements Callable<FormatFileCallable.Result> {
   private final CommandLineOptions parameters;
   private final JavaFormatterOptions options;
 
+  /** Records the stats for the whole file, if {@code --stats} was given. */
+  private final @Nullable StatsRecorder stats;
+
   FormatFileCallable(
       CommandLineOptions parameters, Path path, String input, JavaFormatterOptions options) {
     this.path = path;
     this.input = input;
     this.parameters = parameters;
     this.options = options;
+    this.stats = parameters.stats() ? new StatsRecorder(input.length()) : null;
   }
 
   @Override
   public Result call() {
+    if (stats == null) {
+      return format();
+    }
+    return stats.run(this::format).withStats(stats.build());
+  }
+
+  private Result format() {
     try {
       if (parameters.fixImportsOnly()) {
-        return Result.create(path, input, fixImports(input), /* exception= */ null);
+        return Result.create(
+            path, input, fixImports(input, parameters.removeUnusedImports()), /* exception= */ null);
       }
 
       Formatter formatter = new Formatter(options);
-      String formatted = formatter.formatSource(input, characterRanges(input).asRanges());
-      formatted = fixImports(formatted);
-      if (parameters.reflowLongStrings()) {
-        formatted = StringWrapper.wrap(Formatter.MAX_LINE_LENGTH, formatted, formatter);
+      JavaInput javaInput = new JavaInput(input);
+      // The unused import pass only depends on the names used in the compilation unit, which
+      // formatting doesn't change, so the formatter's parse can tell us whether it's needed.
+      boolean removeUnusedImports =
+          parameters.removeUnusedImports()
+              && RemoveUnusedImports.hasUnusedImports(Formatter.parse(javaInput));
+      if (parameters.dryRun() && !parameters.isSelection()) {
+        // Only whether the file would change is reported, so there is no need to build the
+        // formatted output, or to look any further once some of it differs from the input.
+        if (!formatter.isFormatted(javaInput)) {
+          return Result.create(path, input, /* output= */ null, /* exception= */ null);
+        }
+        return Result.create(
+            path, input, finish(formatter, input, removeUnusedImports), /* exception= */ null);
       }
-      return Result.create(path, input, formatted, /* exception= */ null);
+      String formatted =
+          JavaOutput.applyReplacements(
+              input, formatter.getFormatReplacements(javaInput, characterRanges(input).asRanges()));
+      return Result.create(
+          path, input, finish(formatter, formatted, removeUnusedImports), /* exception= */ null);
+    } catch (FormatterException e) {
+      return Result.create(path, input, /* output= */ null, e);
+    }
+  }
+
+  /**
+   * Splits the input into chunks of top-level type declarations that can be formatted
+   * independently, with {@link #formatChunk}, and then reassembled with {@link #join}. The first
+   * chunk also contains the package declaration and imports. Returns a single chunk if the input
+   * can't be split.
+   */
+  ImmutableList<String> splitTopLevelTypes() {
+    JCCompilationUnit unit;
+    try {
+      unit = stats != null ? stats.run(this::parse) : parse();
+    } catch (FormatterException e) {
+      return ImmutableList.of(input);
+    }
+    List<? extends Tree> types = unit.getTypeDecls();
+    if (unit.getModule() != null || !types.stream().allMatch(ClassTree.class::isInstance)) {
+      return ImmutableList.of(input);
+    }
+    ImmutableList.Builder<String> chunks = ImmutableList.builder();
+    int start = 0;
+    for (int i = 0; i + 1 < types.size(); i++) {
+      // Split after the line that a declaration ends on, as long as the rest of that line is at
+      // most a line comment, which the formatter would keep with the declaration.
+      int end = getEndPosition(types.get(i), unit);
+      int lineEnd = input.indexOf('\n', end);
+      if (lineEnd < 0 || lineEnd >= getStartPosition(types.get(i + 1))) {
+        continue;
+      }
+      String rest = input.substring(end, lineEnd).strip();
+      if (!rest.isEmpty() && !rest.startsWith("//")) {
+        continue;
+      }
+      chunks.add(input.substring(start, lineEnd + 1));
+      start = lineEnd + 1;
+    }
+    chunks.add(input.substring(start));
+    return chunks.build();
+  }
+
+  private JCCompilationUnit parse() throws FormatterException {
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.PARSE)) {
+      return Trees.parse(input, /* allowStringFolding= */ false);
+    }
+  }
+
+  /** Formats a chunk returned by {@link #splitTopLevelTypes}, or returns null on failure. */
+  @Nullable String formatChunk(String chunk) {
+    if (stats == null) {
+      return formatChunkInternal(chunk);
+    }
+    // Chunks are formatted concurrently, so each one is recorded separately.
+    StatsRecorder chunkStats = new StatsRecorder(chunk.length());
+    String formatted = chunkStats.run(() -> formatChunkInternal(chunk));
+    stats.merge(chunkStats);
+    return formatted;
+  }
+
+  private @Nullable String formatChunkInternal(String chunk) {
+    try {
+      return new Formatter(options).formatSource(chunk);
+    } catch (FormatterException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Reassembles the formatted chunks of the input, and fixes imports. Falls back to formatting the
+   * whole input if any of the chunks couldn't be formatted.
+   */
+  Result join(List<@Nullable String> formattedChunks) {
+    if (stats == null) {
+      return joinInternal(formattedChunks);
+    }
+    return stats.run(() -> joinInternal(formattedChunks)).withStats(stats.build());
+  }
+
+  private Result joinInternal(List<@Nullable String> formattedChunks) {
+    if (formattedChunks.contains(null)) {
+      return format();
+    }
+    // The formatter separates top-level declarations with exactly one blank line.
+    String formatted = String.join(Newlines.guessLineSeparator(input), formattedChunks);
+    try {
+      return Result.create(
+          path,
+          input,
+          finish(new Formatter(options), formatted, parameters.removeUnusedImports()),
+          /* exception= */ null);
     } catch (FormatterException e) {
       return Result.create(path, input, /* output= */ null, e);
     }
   }
 
-  private String fixImports(String input) throws FormatterException {
-    if (parameters.removeUnusedImports()) {
+  private String finish(Formatter formatter, String formatted, boolean removeUnusedImports)
+      throws FormatterException {
+    formatted = fixImports(formatted, removeUnusedImports);
+    if (parameters.reflowLongStrings()) {
+      formatted =
+          parameters.isSelection()
+              ? StringWrapper.wrap(Formatter.MAX_LINE_LENGTH, formatted, formatter)
+              : StringWrapper.wrapFormatted(Formatter.MAX_LINE_LENGTH, formatted);
+    }
+    return formatted;
+  }
+
+  private String fixImports(String input, boolean removeUnusedImports) throws FormatterException {
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.FIX_IMPORTS)) {
+      return fixImportsInternal(input, removeUnusedImports);
+    }
+  }
+
+  private String fixImportsInternal(String input, boolean removeUnusedImports)
+      throws FormatterException {
+    if (removeUnusedImports) {
       input = RemoveUnusedImports.removeUnusedImports(input);
     }
     if (parameters.sortImports()) {
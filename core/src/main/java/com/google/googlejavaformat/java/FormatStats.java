@@ -0,0 +1,92 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import com.google.common.collect.ImmutableMap;
+import java.time.Duration;
+
+/**
+ * Measurements of the work done to format a single input, for finding out why an input is slow to
+ * format. See {@link JavaFormatterOptions#statsListener}.
+ *
+ * <p>Time and allocation are attributed to the innermost phase that is running, so the phases don't
+ * overlap: for example, the time spent formatting javadoc during {@link Phase#COMPUTE_BREAKS} only
+ * counts towards {@link Phase#FORMAT_JAVADOC}. Some inputs are lexed, parsed, or formatted more
+ * than once (e.g. to fix imports, or to reflow long strings), and the counts and measurements
+ * include every pass.
+ *
+ * @param inputLength the length of the input, in characters
+ * @param tokens the number of tokens lexed
+ * @param docs the number of {@link com.google.googlejavaformat.Doc}s built
+ * @param replacements the number of {@link Replacement}s computed
+ * @param phaseTimes the wall time spent in each phase that ran
+ * @param phaseAllocatedBytes the number of bytes allocated in each phase that ran, if the JVM
+ *     supports measuring allocation
+ */
+public record FormatStats(
+    int inputLength,
+    int tokens,
+    int docs,
+    int replacements,
+    ImmutableMap<Phase, Duration> phaseTimes,
+    ImmutableMap<Phase, Long> phaseAllocatedBytes) {
+
+  /** The phases of formatting an input. */
+  public enum Phase {
+    /** Splitting the input into tokens. */
+    LEX,
+    /** Parsing the input with javac. */
+    PARSE,
+    /** Reordering modifiers. */
+    REORDER_MODIFIERS,
+    /** Visiting the AST to build a list of {@link com.google.googlejavaformat.Op}s. */
+    BUILD_OPS,
+    /** Building a {@link com.google.googlejavaformat.Doc} from the ops. */
+    BUILD_DOC,
+    /** Choosing which line breaks to take. */
+    COMPUTE_BREAKS,
+    /** Reformatting javadoc comments. */
+    FORMAT_JAVADOC,
+    /** Writing the formatted output. */
+    WRITE,
+    /** Computing and applying the replacements between the input and the output. */
+    REPLACEMENTS,
+    /** Ordering imports, and removing unused imports. */
+    FIX_IMPORTS,
+    /** Reflowing long strings. */
+    WRAP_STRINGS,
+    /** Checking that reflowing long strings didn't change the AST. */
+    VERIFY_WRAPPED_STRINGS,
+  }
+
+  /**
+   * Receives the {@link FormatStats} for each input after it is formatted. A listener may be called
+   * concurrently from several threads, if inputs are formatted concurrently.
+   */
+  @FunctionalInterface
+  public interface Listener {
+    void formatted(FormatStats stats);
+  }
+
+  /** Returns the total wall time spent in all phases. */
+  public Duration totalTime() {
+    return phaseTimes.values().stream().reduce(Duration.ZERO, Duration::plus);
+  }
+
+  /** Returns the total number of bytes allocated in all phases. */
+  public long totalAllocatedBytes() {
+    return phaseAllocatedBytes.values().stream().mapToLong(Long::longValue).sum();
+  }
+}
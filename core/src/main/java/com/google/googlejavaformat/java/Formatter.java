@@ -14,7 +14,6 @@
 
 package com.google.googlejavaformat.java;
 
-
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
@@ -24,19 +23,21 @@ import com.google.common.collect.TreeRangeSet;
 import com.google.common.io.CharSink;
 import com.google.common.io.CharSource;
 import com.google.errorprone.annotations.Immutable;
-import com.google.googlejavaformat.CommentsHelper;
 import com.google.googlejavaformat.Doc;
 import com.google.googlejavaformat.DocBuilder;
 import com.google.googlejavaformat.FormattingError;
 import com.google.googlejavaformat.Newlines;
 import com.google.googlejavaformat.Op;
 import com.google.googlejavaformat.OpsBuilder;
+import com.google.googlejavaformat.java.FormatStats.Phase;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
-import com.sun.tools.javac.util.Context;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Executor;
 import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
 
@@ -100,33 +101,85 @@ public final class Formatter {
    */
   static void format(final JavaInput javaInput, JavaOutput javaOutput, JavaFormatterOptions options)
       throws FormatterException {
-    Context context = new Context();
-    List<Diagnostic<? extends JavaFileObject>> errorDiagnostics = new ArrayList<>();
-    JCCompilationUnit unit =
-        Trees.parse(
-            context, errorDiagnostics, /* allowStringFolding= */ false, javaInput.getText());
+    write(layOut(javaInput, javaOutput, options), javaOutput);
+  }
 
-    javaInput.setCompilationUnit(unit);
-    if (!errorDiagnostics.isEmpty()) {
-      throw FormatterException.fromJavacDiagnostics(errorDiagnostics);
-    }
+  /**
+   * Builds the {@link Doc} for the given input, and computes its breaks. Any errors in the input
+   * are reported here, before anything is written to the output.
+   */
+  private static Doc layOut(
+      JavaInput javaInput, JavaOutput javaOutput, JavaFormatterOptions options)
+      throws FormatterException {
+    JCCompilationUnit unit = parse(javaInput);
     OpsBuilder builder = new OpsBuilder(javaInput, javaOutput);
     ImmutableSet.Builder<Integer> markdownJavadocPositions = ImmutableSet.builder();
-    // Output the compilation unit.
-    JavaInputAstVisitor visitor =
-        new JavaInputAstVisitor(builder, options.indentationMultiplier(), markdownJavadocPositions);
-    visitor.scan(unit, null);
-    builder.sync(javaInput.getText().length());
-    builder.drain();
-    Doc doc = new DocBuilder().withOps(builder.build()).build();
-    CommentsHelper commentsHelper =
+    ImmutableList<Op> ops;
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.BUILD_OPS)) {
+      // Output the compilation unit.
+      JavaInputAstVisitor visitor =
+          new JavaInputAstVisitor(
+              builder, options.indentationMultiplier(), markdownJavadocPositions);
+      visitor.scan(unit, null);
+      builder.sync(javaInput.getText().length());
+      builder.drain();
+      ops = builder.build();
+    }
+    Doc doc;
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.BUILD_DOC)) {
+      doc = new DocBuilder().withOps(ops).build();
+    }
+    if (StatsRecorder.recording()) {
+      StatsRecorder.countDocs(doc.countDocs());
+    }
+    JavaCommentsHelper commentsHelper =
         new JavaCommentsHelper(
             Newlines.guessLineSeparator(javaInput.getText()),
             options,
             markdownJavadocPositions.build());
-    doc.computeBreaks(commentsHelper, MAX_LINE_LENGTH, new Doc.State(+0, 0));
-    doc.write(javaOutput);
-    javaOutput.flush();
+    Executor javadocExecutor = options.javadocExecutor();
+    if (options.formatJavadoc() && javadocExecutor != null) {
+      commentsHelper.preformatJavadoc(
+          JavadocColumns.predict(javaInput, unit, options.indentationMultiplier()),
+          javadocExecutor);
+    }
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.COMPUTE_BREAKS)) {
+      doc.computeBreaks(commentsHelper, MAX_LINE_LENGTH, new Doc.State(+0, 0));
+    }
+    return doc;
+  }
+
+  private static void write(Doc doc, JavaOutput javaOutput) {
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.WRITE)) {
+      doc.write(javaOutput);
+      javaOutput.flush();
+    }
+  }
+
+  /**
+   * Returns the compilation unit for the given input, parsing it if it hasn't already been parsed.
+   * The result is retained by the {@link JavaInput}, so passes that run over the same input text
+   * share a single parse.
+   *
+   * @throws FormatterException if the input cannot be parsed
+   */
+  static JCCompilationUnit parse(JavaInput javaInput) throws FormatterException {
+    JCCompilationUnit unit = javaInput.getCompilationUnit();
+    if (unit != null) {
+      return unit;
+    }
+    List<Diagnostic<? extends JavaFileObject>> errorDiagnostics = new ArrayList<>();
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.PARSE)) {
+      unit = Trees.parse(errorDiagnostics, /* allowStringFolding= */ false, javaInput.getText());
+    }
+
+    if (!errorDiagnostics.isEmpty()) {
+      throw FormatterException.fromJavacDiagnostics(errorDiagnostics);
+    }
+    // Only a successful parse is retained, so that later passes over the input report the errors
+    // again instead of reusing a broken tree.
+    javaInput.setCompilationUnit(unit);
+    return unit;
   }
 
   static boolean errorDiagnostic(Diagnostic<?> input) {
@@ -141,15 +194,143 @@ public final class Formatter {
   /**
    * Format the given input (a Java compilation unit) into the output stream.
    *
+   * <p>The output is written to the sink line by line as it is produced, instead of being built up
+   * in memory first. The sink is only opened once the input has been formatted without errors, so
+   * if a {@link FormatterException} is thrown, nothing has been written.
+   *
    * @throws FormatterException if the input cannot be parsed
    */
   public void formatSource(CharSource input, CharSink output)
       throws FormatterException, IOException {
-    // TODO(cushon): proper support for streaming input/output. Input may
-    // not be feasible (parsing) but output should be easier.
-    output.write(formatSource(input.read()));
+    String text = input.read();
+    try {
+      withStats(
+          text,
+          () -> {
+            formatTo(new JavaInput(text), output);
+            return null;
+          });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Formats the whole input, and streams the output to the given sink. {@link IOException}s from
+   * the sink are rethrown as {@link UncheckedIOException}s.
+   */
+  private void formatTo(JavaInput javaInput, CharSink output) throws FormatterException {
+    String input = javaInput.getText();
+    ImmutableList<Range<Integer>> characterRanges =
+        ImmutableList.of(Range.closedOpen(0, input.length()));
+    if (javaInput.getkN() == 0) {
+      // The input is all whitespace, which the replacements leave alone (except that an empty
+      // input gets a newline), rather than write out as lines.
+      writeTo(
+          output,
+          JavaOutput.applyReplacements(input, getFormatReplacements(javaInput, characterRanges)));
+      return;
+    }
+    if (options.reorderModifiers()) {
+      try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.REORDER_MODIFIERS)) {
+        javaInput = ModifierOrderer.reorderModifiers(javaInput, characterRanges);
+      }
+    }
+    String lineSeparator = Newlines.guessLineSeparator(input);
+    JavaOutput javaOutput =
+        new JavaOutput(
+            lineSeparator,
+            javaInput,
+            new JavaCommentsHelper(lineSeparator, options, ImmutableSet.of()));
+    Doc doc;
+    try {
+      doc = layOut(javaInput, javaOutput, options);
+    } catch (FormattingError e) {
+      throw new FormatterException(e.diagnostics());
+    }
+    try (Writer writer = output.openStream()) {
+      javaOutput.streamTo(writer);
+      write(doc, javaOutput);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void writeTo(CharSink output, String formatted) {
+    try {
+      output.write(formatted);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
+  /**
+   * Returns true if formatting the whole input wouldn't change it. The output is compared to the
+   * input as it is written, without building it up, and formatting stops at the first difference.
+   * If the input's compilation unit has already been parsed, it is reused.
+   *
+   * <p>Only the formatting itself is checked: fixing imports or reflowing long strings might still
+   * change a formatted input.
+   *
+   * @throws FormatterException if the input cannot be parsed
+   */
+  boolean isFormatted(JavaInput javaInput) throws FormatterException {
+    ComparingWriter writer = new ComparingWriter(javaInput.getText());
+    try {
+      formatTo(
+          javaInput,
+          new CharSink() {
+            @Override
+            public Writer openStream() {
+              return writer;
+            }
+          });
+    } catch (UncheckedIOException e) {
+      if (e.getCause() instanceof OutputDiffersException) {
+        return false;
+      }
+      throw e;
+    }
+    return writer.matchedAll();
+  }
+
+  /** A {@link Writer} that checks that it is written the expected text. */
+  private static final class ComparingWriter extends Writer {
+    private final String expected;
+    private int position = 0;
+
+    ComparingWriter(String expected) {
+      this.expected = expected;
+    }
+
+    /** Returns true if everything that was expected has been written. */
+    boolean matchedAll() {
+      return position == expected.length();
+    }
+
+    @Override
+    public void write(String str) throws OutputDiffersException {
+      if (!expected.startsWith(str, position)) {
+        throw new OutputDiffersException();
+      }
+      position += str.length();
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws OutputDiffersException {
+      write(new String(buffer, offset, length));
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+
+  /** Thrown by a {@link ComparingWriter} at the first difference from the expected text. */
+  private static final class OutputDiffersException extends IOException {}
+
   /**
    * Format an input string (a Java compilation unit) into an output string.
    *
@@ -176,10 +357,33 @@ public final class Formatter {
    *     Google Java Style Guide - 3.3.3 Import ordering and spacing</a>
    */
   public String formatSourceAndFixImports(String input) throws FormatterException {
-    input = ImportOrderer.reorderImports(input, options.style());
-    input = RemoveUnusedImports.removeUnusedImports(input);
-    String formatted = formatSource(input);
-    formatted = StringWrapper.wrap(formatted, this);
+    return withStats(input, () -> formatSourceAndFixImportsInternal(input));
+  }
+
+  private String formatSourceAndFixImportsInternal(String input) throws FormatterException {
+    JCCompilationUnit unit;
+    boolean hasUnusedImports;
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.FIX_IMPORTS)) {
+      input = ImportOrderer.reorderImports(input, options.style());
+      try (StatsRecorder.Timer parseTimer = StatsRecorder.start(Phase.PARSE)) {
+        unit = Trees.parse(input, /* allowStringFolding= */ false);
+      }
+      hasUnusedImports = RemoveUnusedImports.hasUnusedImports(unit);
+      if (hasUnusedImports) {
+        input = RemoveUnusedImports.removeUnusedImports(input, unit);
+      }
+    }
+    JavaInput javaInput = new JavaInput(input);
+    if (!hasUnusedImports) {
+      // Nothing was removed, so the formatter can reuse the parse of the input.
+      javaInput.setCompilationUnit(unit);
+    }
+    String formatted =
+        JavaOutput.applyReplacements(
+            input,
+            getFormatReplacements(
+                javaInput, ImmutableList.of(Range.closedOpen(0, input.length()))));
+    formatted = StringWrapper.wrapFormatted(MAX_LINE_LENGTH, formatted);
     return formatted;
   }
 
@@ -194,7 +398,11 @@ public final class Formatter {
    */
   public String formatSource(String input, Collection<Range<Integer>> characterRanges)
       throws FormatterException {
-    return JavaOutput.applyReplacements(input, getFormatReplacements(input, characterRanges));
+    return withStats(
+        input,
+        () ->
+            JavaOutput.applyReplacements(
+                input, getFormatReplacements(new JavaInput(input), characterRanges)));
   }
 
   /**
@@ -207,13 +415,62 @@ public final class Formatter {
    */
   public ImmutableList<Replacement> getFormatReplacements(
       String input, Collection<Range<Integer>> characterRanges) throws FormatterException {
-    JavaInput javaInput = new JavaInput(input);
+    return withStats(input, () -> getFormatReplacements(new JavaInput(input), characterRanges));
+  }
+
+  /**
+   * Runs a public entry point of the formatter, and reports its stats if there is a {@link
+   * JavaFormatterOptions#statsListener}. Work done from within another entry point (e.g. by {@link
+   * StringWrapper}) is recorded as part of the outer entry point.
+   */
+  private <T> T withStats(String input, StatsRecorder.Task<T, FormatterException> task)
+      throws FormatterException {
+    FormatStats.Listener listener = options.statsListener();
+    if (listener == null || StatsRecorder.recording()) {
+      return task.run();
+    }
+    StatsRecorder recorder = new StatsRecorder(input.length());
+    T result = recorder.run(task);
+    listener.formatted(recorder.build());
+    return result;
+  }
+
+  /**
+   * Emit a list of {@link Replacement}s to convert from the given input to output. If the input's
+   * compilation unit has already been parsed, it is reused.
+   *
+   * <p>Ranges within a few members of top-level classes are formatted by laying out only those
+   * members; see {@link MemberRegions}.
+   */
+  ImmutableList<Replacement> getFormatReplacements(
+      JavaInput javaInput, Collection<Range<Integer>> characterRanges) throws FormatterException {
+    Range<Integer> wholeInput = Range.closedOpen(0, javaInput.getText().length());
+    if (characterRanges.stream().noneMatch(range -> range.encloses(wholeInput))) {
+      parse(javaInput);
+      MemberRegions.Formatted formatted =
+          MemberRegions.of(javaInput).format(this, javaInput.getText(), characterRanges);
+      if (formatted != null) {
+        return formatted.replacements();
+      }
+    }
+    return getFormatReplacementsFromWholeUnit(javaInput, characterRanges);
+  }
+
+  /**
+   * Like {@link #getFormatReplacements(JavaInput, Collection)}, but always lays out the whole
+   * compilation unit.
+   */
+  ImmutableList<Replacement> getFormatReplacementsFromWholeUnit(
+      JavaInput javaInput, Collection<Range<Integer>> characterRanges) throws FormatterException {
+    String input = javaInput.getText();
 
     // TODO(cushon): this is only safe because the modifier ordering doesn't affect whitespace,
     // and doesn't change the replacements that are output. This is not true in general for
     // 'de-linting' changes (e.g. import ordering).
     if (options.reorderModifiers()) {
-      javaInput = ModifierOrderer.reorderModifiers(javaInput, characterRanges);
+      try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.REORDER_MODIFIERS)) {
+        javaInput = ModifierOrderer.reorderModifiers(javaInput, characterRanges);
+      }
     }
 
     String lineSeparator = Newlines.guessLineSeparator(input);
@@ -227,8 +484,12 @@ public final class Formatter {
     } catch (FormattingError e) {
       throw new FormatterException(e.diagnostics());
     }
-    RangeSet<Integer> tokenRangeSet = javaInput.characterRangesToTokenRanges(characterRanges);
-    return javaOutput.getFormatReplacements(tokenRangeSet);
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.REPLACEMENTS)) {
+      RangeSet<Integer> tokenRangeSet = javaInput.characterRangesToTokenRanges(characterRanges);
+      ImmutableList<Replacement> replacements = javaOutput.getFormatReplacements(tokenRangeSet);
+      StatsRecorder.countReplacements(replacements.size());
+      return replacements;
+    }
   }
 
   /**
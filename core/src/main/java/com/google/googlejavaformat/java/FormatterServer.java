@@ -0,0 +1,322 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A long-lived google-java-format process that accepts formatting requests over a Unix domain
+ * socket, so that each invocation doesn't pay for JVM startup and for loading and warming up javac.
+ *
+ * <p>Usage: {@code java -cp google-java-format-all-deps.jar
+ * com.google.googlejavaformat.java.FormatterServer <socket path>}. The {@code
+ * scripts/google-java-format-client.py} script forwards a command line to a running server.
+ *
+ * <p>The server reads and writes files as the user it runs as, on behalf of anyone who can connect
+ * to its socket. On systems with POSIX file permissions, the socket is only accessible to its
+ * owner (mode 0600), whatever the umask. Prefer a socket path in a directory that only its owner
+ * can write to, such as {@code $XDG_RUNTIME_DIR}, over a shared directory such as {@code /tmp}. The
+ * server won't start if something other than a stale socket is at the socket path, so it never
+ * deletes another file or takes over the socket of a running server.
+ *
+ * <p>Each connection carries a single request, which is handled exactly like a command-line
+ * invocation of {@link Main}, except that formatted javadoc comments are cached across requests.
+ * All integers are big-endian 32-bit values, and strings and byte arrays are prefixed with their
+ * length. Strings are encoded as UTF-8.
+ *
+ * <ul>
+ *   <li>The request is the client's working directory (a string), the number of command-line
+ *       arguments followed by each argument (strings), and the contents of standard input (bytes).
+ *   <li>The response is the exit code (an integer), followed by the contents of standard output
+ *       and standard error (bytes).
+ * </ul>
+ */
+public final class FormatterServer {
+
+  private final ServerSocketChannel serverChannel;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final JavadocCache javadocCache = JavadocCache.create();
+
+  private FormatterServer(ServerSocketChannel serverChannel) {
+    this.serverChannel = serverChannel;
+  }
+
+  public static void main(String... args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: FormatterServer <socket path>");
+      System.exit(2);
+    }
+    Path socket = Paths.get(args[0]);
+    FormatterServer server;
+    try {
+      server = start(socket);
+    } catch (FileAlreadyExistsException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+      return;
+    }
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  server.close();
+                  try {
+                    Files.deleteIfExists(socket);
+                  } catch (IOException e) {
+                    // best effort
+                  }
+                }));
+    server.serve();
+  }
+
+  /**
+   * Binds a new server to the given socket path, replacing any stale socket file.
+   *
+   * @throws FileAlreadyExistsException if something other than a socket is at the path, or a
+   *     server is listening on it
+   */
+  static FormatterServer start(Path socket) throws IOException {
+    deleteStaleSocket(socket);
+    ServerSocketChannel serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    try {
+      if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+        bindPrivately(serverChannel, socket);
+      } else {
+        serverChannel.bind(UnixDomainSocketAddress.of(socket));
+      }
+    } catch (IOException e) {
+      serverChannel.close();
+      throw e;
+    }
+    return new FormatterServer(serverChannel);
+  }
+
+  /** Deletes the socket file at the given path, if nothing is listening on it. */
+  private static void deleteStaleSocket(Path socket) throws IOException {
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(socket, BasicFileAttributes.class, NOFOLLOW_LINKS);
+    } catch (NoSuchFileException e) {
+      return;
+    }
+    if (!attributes.isOther() || !isSocket(socket)) {
+      throw new FileAlreadyExistsException(socket.toString(), null, "not a socket");
+    }
+    try {
+      SocketChannel.open(UnixDomainSocketAddress.of(socket)).close();
+    } catch (ConnectException e) {
+      // Nothing is listening, so the socket was left behind by a server that exited.
+      Files.delete(socket);
+      return;
+    }
+    throw new FileAlreadyExistsException(
+        socket.toString(), null, "a server is already listening on this socket");
+  }
+
+  private static boolean isSocket(Path path) throws IOException {
+    int mode;
+    try {
+      mode = (Integer) Files.getAttribute(path, "unix:mode", NOFOLLOW_LINKS);
+    } catch (UnsupportedOperationException | IllegalArgumentException e) {
+      // Sockets are the only "other" files that can be connected to.
+      return true;
+    }
+    return (mode & S_IFMT) == S_IFSOCK;
+  }
+
+  private static final int S_IFMT = 0170000;
+  private static final int S_IFSOCK = 0140000;
+
+  /**
+   * Binds the server to a socket that only its owner can connect to. The socket is created in a new
+   * directory that only the owner can access, made private, and then moved into place, so nobody
+   * else can connect in between. The directory is next to the socket path, since the length of a
+   * socket path is limited.
+   */
+  private static void bindPrivately(ServerSocketChannel serverChannel, Path socket)
+      throws IOException {
+    Path parent = socket.toAbsolutePath().getParent();
+    Path directory =
+        Files.createTempDirectory(
+            parent,
+            ".gjf",
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+    try {
+      Path temp = directory.resolve("socket");
+      serverChannel.bind(UnixDomainSocketAddress.of(temp));
+      Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+      Files.move(temp, socket, ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(directory.resolve("socket"));
+      Files.delete(directory);
+    }
+  }
+
+  /** Accepts and handles requests until the server is closed. */
+  void serve() {
+    while (serverChannel.isOpen()) {
+      SocketChannel channel;
+      try {
+        channel = serverChannel.accept();
+      } catch (IOException e) {
+        // the channel was closed
+        break;
+      }
+      executor.execute(() -> handle(channel, javadocCache));
+    }
+  }
+
+  void close() {
+    try {
+      serverChannel.close();
+    } catch (IOException e) {
+      // best effort
+    }
+    executor.shutdown();
+  }
+
+  private static void handle(SocketChannel channel, JavadocCache javadocCache) {
+    try (channel;
+        DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+        DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel))) {
+      Path workingDirectory = Paths.get(readString(in));
+      int argc = in.readInt();
+      String[] args = new String[argc];
+      for (int i = 0; i < argc; i++) {
+        args[i] = resolveParamsFile(workingDirectory, readString(in));
+      }
+      byte[] stdin = readBytes(in);
+
+      ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+      ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+      int result =
+          run(
+              workingDirectory,
+              args,
+              new ByteArrayInputStream(stdin),
+              stdout,
+              stderr,
+              javadocCache);
+
+      out.writeInt(result);
+      writeBytes(out, stdout.toByteArray());
+      writeBytes(out, stderr.toByteArray());
+    } catch (IOException e) {
+      // the client went away; there is nobody to report the error to
+    }
+  }
+
+  private static int run(
+      Path workingDirectory,
+      String[] args,
+      InputStream in,
+      OutputStream out,
+      OutputStream err,
+      JavadocCache javadocCache) {
+    PrintWriter outWriter = new PrintWriter(new OutputStreamWriter(out, UTF_8));
+    PrintWriter errWriter = new PrintWriter(new OutputStreamWriter(err, UTF_8));
+    try {
+      return new Main(outWriter, errWriter, in, workingDirectory, javadocCache).format(args);
+    } catch (UsageException e) {
+      errWriter.print(e.getMessage());
+      return 2;
+    } catch (RuntimeException e) {
+      errWriter.print(e.getMessage());
+      return 1;
+    } finally {
+      outWriter.flush();
+      errWriter.flush();
+    }
+  }
+
+  /** Resolves {@code @filename} arguments against the client's working directory. */
+  private static String resolveParamsFile(Path workingDirectory, String arg) {
+    if (arg.startsWith("@") && !arg.startsWith("@@")) {
+      return "@" + workingDirectory.resolve(arg.substring(1));
+    }
+    return arg;
+  }
+
+  /** The result of a request to a {@link FormatterServer}. */
+  record Response(int exitCode, String stdout, String stderr) {}
+
+  /** Sends a request to the server listening on the given socket. */
+  static Response request(Path socket, Path workingDirectory, List<String> args, String stdin)
+      throws IOException {
+    try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+        DataInputStream in = new DataInputStream(Channels.newInputStream(channel))) {
+      writeString(out, workingDirectory.toString());
+      out.writeInt(args.size());
+      for (String arg : args) {
+        writeString(out, arg);
+      }
+      writeBytes(out, stdin.getBytes(UTF_8));
+      out.flush();
+      int exitCode = in.readInt();
+      String stdout = new String(readBytes(in), UTF_8);
+      String stderr = new String(readBytes(in), UTF_8);
+      return new Response(exitCode, stdout, stderr);
+    }
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    return new String(readBytes(in), UTF_8);
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    writeBytes(out, value.getBytes(UTF_8));
+  }
+
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Formats a Java source file as it is edited, e.g. to format the edited lines of a file in an
+ * editor each time it is saved.
+ *
+ * <p>A session keeps the text of the file, and where the members of its top-level classes start and
+ * end. After some {@link #edit edits}, {@link #format} formats just the edited text, by formatting
+ * a small compilation unit that holds only the class members that were edited. So the time it takes
+ * depends on the size of those members, and not on the size of the file. The result is the same as
+ * {@link Formatter#getFormatReplacements} for the edited text of the whole file.
+ *
+ * <p>Edits outside of class members, e.g. to imports or to a class's header, and edits within enums
+ * and records, are formatted by formatting the whole file, and then the file is parsed again the
+ * next time it is formatted.
+ *
+ * <p>A session is not thread-safe.
+ */
+public final class IncrementalFormatter {
+
+  private final Formatter formatter;
+  private String text;
+
+  /** The text that has been edited since it was last formatted. */
+  private final RangeSet<Integer> edited = TreeRangeSet.create();
+
+  /** The members of the file, or {@code null} if the file needs to be parsed to find them. */
+  private @Nullable MemberRegions regions;
+
+  /**
+   * Starts a session for a file.
+   *
+   * @param formatter the formatter to format the file with
+   * @param text the text of the file
+   */
+  public IncrementalFormatter(Formatter formatter, String text) {
+    this.formatter = formatter;
+    this.text = text;
+  }
+
+  /** Returns the current text of the file. */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Replaces some of the text of the file, which will be formatted by the next call to {@link
+   * #format}.
+   *
+   * @param start the start of the text to replace
+   * @param end the end of the text to replace
+   * @param replacement the new text
+   */
+  public void edit(int start, int end, String replacement) {
+    checkPositionIndexes(start, end, text.length());
+    text =
+        new StringBuilder(text.length() - (end - start) + replacement.length())
+            .append(text, 0, start)
+            .append(replacement)
+            .append(text, end, text.length())
+            .toString();
+    int delta = replacement.length() - (end - start);
+    RangeSet<Integer> shifted = TreeRangeSet.create();
+    for (Range<Integer> range : edited.asRanges()) {
+      int lo = range.lowerEndpoint();
+      int hi = range.upperEndpoint();
+      if (lo >= end) {
+        shifted.add(Range.closedOpen(lo + delta, hi + delta));
+      } else if (hi <= start) {
+        shifted.add(range);
+      } else {
+        shifted.add(Range.closedOpen(Math.min(lo, start), Math.max(hi + delta, start)));
+      }
+    }
+    // A deletion leaves nothing to format, so format the text next to it instead.
+    int editEnd = Math.max(start + replacement.length(), Math.min(start + 1, text.length()));
+    int editStart = Math.min(start, Math.max(editEnd - 1, 0));
+    shifted.add(Range.closedOpen(editStart, editEnd));
+    edited.clear();
+    edited.addAll(shifted);
+    if (regions != null) {
+      regions.edit(start, end, replacement.length());
+    }
+  }
+
+  /**
+   * Formats the text that has been edited since the file was last formatted, and updates the text
+   * of the file.
+   *
+   * @return the replacements that were made to the text, sorted from low index to high index,
+   *     without overlaps
+   * @throws FormatterException if the file cannot be parsed
+   */
+  public ImmutableList<Replacement> format() throws FormatterException {
+    if (edited.isEmpty()) {
+      return ImmutableList.of();
+    }
+    if (regions == null) {
+      JavaInput input = new JavaInput(text);
+      Formatter.parse(input);
+      regions = MemberRegions.of(input);
+    }
+    ImmutableList<Replacement> replacements;
+    MemberRegions.Formatted formatted = regions.format(formatter, text, edited.asRanges());
+    if (formatted != null) {
+      replacements = formatted.replacements();
+      text = JavaOutput.applyReplacements(text, replacements);
+      regions.update(formatted, text);
+    } else {
+      replacements =
+          formatter.getFormatReplacementsFromWholeUnit(new JavaInput(text), edited.asRanges());
+      text = JavaOutput.applyReplacements(text, replacements);
+      regions = null;
+    }
+    edited.clear();
+    return replacements;
+  }
+}
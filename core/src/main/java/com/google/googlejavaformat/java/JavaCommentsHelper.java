@@ -14,16 +14,25 @@
 
 package com.google.googlejavaformat.java;
 
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.googlejavaformat.CommentsHelper;
 import com.google.googlejavaformat.Input.Tok;
 import com.google.googlejavaformat.Newlines;
+import com.google.googlejavaformat.java.FormatStats.Phase;
 import com.google.googlejavaformat.java.javadoc.JavadocFormatter;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -34,6 +43,18 @@ final class JavaCommentsHelper implements CommentsHelper {
   private final JavaFormatterOptions options;
   private final ImmutableSet<Integer> markdownJavadocPositions;
 
+  /**
+   * The number of javadoc comments a file must have before they are formatted in parallel, ahead
+   * of the layout. Formatting a few comments isn't worth handing them to other threads.
+   */
+  static final int MIN_PREFORMATTED_JAVADOC_COMMENTS = 16;
+
+  /** A javadoc comment that was formatted ahead of the layout, at a predicted column. */
+  private record Preformatted(int column, String text) {}
+
+  /** The javadoc comments formatted by {@link #preformatJavadoc}, by position. */
+  private ImmutableMap<Integer, Preformatted> preformatted = ImmutableMap.of();
+
   JavaCommentsHelper(
       String lineSeparator,
       JavaFormatterOptions options,
@@ -49,14 +70,16 @@ final class JavaCommentsHelper implements CommentsHelper {
       return tok.getOriginalText();
     }
     String text = tok.getOriginalText();
-    if (tok.isJavadocComment() && options.formatJavadoc()) {
+    if (formatsJavadoc(tok)) {
+      Preformatted javadoc = preformatted.get(tok.getPosition());
+      String formatted =
+          javadoc != null && javadoc.column() == column0
+              ? javadoc.text()
+              : formatJavadoc(text, column0);
       if (text.startsWith("///")) {
-        if (markdownJavadocPositions.contains(tok.getPosition())) {
-          return JavadocFormatter.formatJavadoc(text, column0);
-        }
-      } else {
-        text = JavadocFormatter.formatJavadoc(text, column0);
+        return formatted;
       }
+      text = formatted;
     }
     List<String> lines = new ArrayList<>();
     Iterator<String> it = Newlines.lineIterator(text);
@@ -78,6 +101,64 @@ final class JavaCommentsHelper implements CommentsHelper {
                     : preserveIndentation(lines, column0));
   }
 
+  /** Returns true if {@link #rewrite} reformats the given comment with the javadoc formatter. */
+  private boolean formatsJavadoc(Tok tok) {
+    return tok.isJavadocComment()
+        && options.formatJavadoc()
+        && (!tok.getOriginalText().startsWith("///")
+            || markdownJavadocPositions.contains(tok.getPosition()));
+  }
+
+  /**
+   * Formats the given javadoc comments on the executor, at their predicted columns, for {@link
+   * #rewrite} to use if they are laid out at those columns. Laying out a file happens on a single
+   * thread, and formatting its javadoc can take most of that time. Formatting a comment only
+   * depends on its text and column, so when the column can be predicted, the comment can be
+   * formatted on another thread beforehand. A comment that ends up in a different column is
+   * formatted again.
+   *
+   * <p>Nothing is done for files with fewer than {@link #MIN_PREFORMATTED_JAVADOC_COMMENTS}
+   * comments to format.
+   */
+  void preformatJavadoc(Map<Tok, Integer> predictedColumns, Executor executor) {
+    List<Map.Entry<Tok, Integer>> comments =
+        predictedColumns.entrySet().stream().filter(e -> formatsJavadoc(e.getKey())).toList();
+    if (comments.size() < MIN_PREFORMATTED_JAVADOC_COMMENTS) {
+      return;
+    }
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.FORMAT_JAVADOC)) {
+      // The comments aren't timed on the executor's threads, which may be recording stats for
+      // other files, so the timer here covers the whole pass.
+      ImmutableMap<Integer, CompletableFuture<Preformatted>> futures =
+          comments.stream()
+              .collect(
+                  toImmutableMap(
+                      e -> e.getKey().getPosition(),
+                      e ->
+                          supplyAsync(
+                              () ->
+                                  new Preformatted(
+                                      e.getValue(),
+                                      formatJavadocText(
+                                          e.getKey().getOriginalText(), e.getValue())),
+                              executor)));
+      preformatted = ImmutableMap.copyOf(Maps.transformValues(futures, CompletableFuture::join));
+    }
+  }
+
+  private String formatJavadoc(String text, int column0) {
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.FORMAT_JAVADOC)) {
+      return formatJavadocText(text, column0);
+    }
+  }
+
+  private String formatJavadocText(String text, int column0) {
+    JavadocCache javadocCache = options.javadocCache();
+    return javadocCache != null
+        ? javadocCache.formatJavadoc(text, column0)
+        : JavadocFormatter.formatJavadoc(text, column0);
+  }
+
   // For non-javadoc-shaped block comments, shift the entire block to the correct
   // column, but do not adjust relative indentation.
   private String preserveIndentation(List<String> lines, int column0) {
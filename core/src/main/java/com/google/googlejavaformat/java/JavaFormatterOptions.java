@@ -18,6 +18,8 @@ import static java.util.Objects.requireNonNull;
 
 import com.google.auto.value.AutoBuilder;
 import com.google.errorprone.annotations.Immutable;
+import java.util.concurrent.Executor;
+import org.jspecify.annotations.Nullable;
 
 /**
  * Options for a google-java-format invocation.
@@ -30,13 +32,38 @@ import com.google.errorprone.annotations.Immutable;
  * preferences, and in fact it would work directly against our primary goals.
  *
  * @param style Returns the code style.
+ * @param statsListener Returns the listener that receives {@link FormatStats} for each input, or
+ *     null if stats aren't recorded.
+ * @param javadocCache Returns the cache of formatted javadoc comments shared between inputs, or
+ *     null if javadoc comments are formatted every time.
+ * @param javadocExecutor Returns the executor that formats a file's javadoc comments ahead of the
+ *     layout, or null if they are formatted during the layout.
  */
 @Immutable
-public record JavaFormatterOptions(boolean formatJavadoc, boolean reorderModifiers, Style style) {
+public record JavaFormatterOptions(
+    boolean formatJavadoc,
+    boolean reorderModifiers,
+    Style style,
+    // Listeners are required to be thread-safe, since a formatter may be used concurrently.
+    @SuppressWarnings("Immutable") FormatStats.@Nullable Listener statsListener,
+    // The cache is thread-safe, and only changes how fast javadoc is formatted.
+    @SuppressWarnings("Immutable") @Nullable JavadocCache javadocCache,
+    // Executors are thread-safe, and only change where javadoc is formatted.
+    @SuppressWarnings("Immutable") @Nullable Executor javadocExecutor) {
   public JavaFormatterOptions {
     requireNonNull(style, "style");
   }
 
+  public JavaFormatterOptions(boolean formatJavadoc, boolean reorderModifiers, Style style) {
+    this(
+        formatJavadoc,
+        reorderModifiers,
+        style,
+        /* statsListener= */ null,
+        /* javadocCache= */ null,
+        /* javadocExecutor= */ null);
+  }
+
   public enum Style {
     /** The default Google Java Style configuration. */
     GOOGLE(1),
@@ -83,6 +110,29 @@ public record JavaFormatterOptions(boolean formatJavadoc, boolean reorderModifie
 
     public abstract Builder reorderModifiers(boolean reorderModifiers);
 
+    /**
+     * Sets a listener to receive {@link FormatStats} for each input formatted by {@link
+     * Formatter#formatSource(String)}, {@link Formatter#formatSourceAndFixImports}, or {@link
+     * Formatter#getFormatReplacements}. Recording stats has a small cost, so by default they aren't
+     * recorded.
+     */
+    public abstract Builder statsListener(FormatStats.@Nullable Listener statsListener);
+
+    /**
+     * Sets a cache of formatted javadoc comments, to share between formatters that format many
+     * inputs with the same options. By default, every javadoc comment is formatted.
+     */
+    public abstract Builder javadocCache(@Nullable JavadocCache javadocCache);
+
+    /**
+     * Sets an executor to format the javadoc comments of large files in parallel, ahead of the
+     * layout, which otherwise happens on a single thread. This helps when formatting one file at a
+     * time; callers that already format many files in parallel gain nothing from it. The executor
+     * mustn't be one whose threads wait for the formatter, since the formatter waits for it. By
+     * default, javadoc comments are formatted during the layout.
+     */
+    public abstract Builder javadocExecutor(@Nullable Executor javadocExecutor);
+
     public abstract JavaFormatterOptions build();
   }
 }
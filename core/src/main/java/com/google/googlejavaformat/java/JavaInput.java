@@ -16,44 +16,34 @@ package com.google.googlejavaformat.java;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Iterables.getLast;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Verify;
 import com.google.common.collect.DiscreteDomain;
-import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableRangeMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import com.google.common.collect.TreeRangeSet;
 import com.google.googlejavaformat.Input;
 import com.google.googlejavaformat.Newlines;
+import com.google.googlejavaformat.java.FormatStats.Phase;
 import com.google.googlejavaformat.java.JavacTokens.RawTok;
-import com.sun.tools.javac.file.JavacFileManager;
 import com.sun.tools.javac.parser.Tokens.TokenKind;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.JCDiagnostic;
 import com.sun.tools.javac.util.Log;
 import com.sun.tools.javac.util.Log.DeferredDiagnosticHandler;
-import com.sun.tools.javac.util.Options;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 import javax.tools.Diagnostic;
-import javax.tools.DiagnosticCollector;
-import javax.tools.DiagnosticListener;
-import javax.tools.JavaFileManager;
-import javax.tools.JavaFileObject;
 import javax.tools.JavaFileObject.Kind;
 import javax.tools.SimpleJavaFileObject;
 import org.jspecify.annotations.Nullable;
@@ -266,9 +256,15 @@ final class JavaInput extends Input {
    * output.
    */
 
-  private final ImmutableMap<Integer, Integer> positionToColumnMap; // Map Tok position to column.
   private final ImmutableList<Token> tokens; // The Tokens for this input.
-  private final ImmutableRangeMap<Integer, Token> positionTokenMap; // Map position to Token.
+
+  // Lookup tables from positions to toks and Tokens, as sorted primitive arrays for binary search.
+  // There is an entry for every Tok in a large input, so boxed maps would cost several times more.
+
+  private final int[] tokPositions; // The position of each Tok, in order.
+  private final int[] tokColumns; // The column of each Tok, in the same order.
+  private final int[] tokenStarts; // The start of each Token's range, in the order of tokens.
+  private final int[] tokenEnds; // The (inclusive) end of each Token's range.
 
   /** Map from Tok index to the associated Token. */
   private final Token[] kToToken;
@@ -281,48 +277,50 @@ final class JavaInput extends Input {
    */
   JavaInput(String text) throws FormatterException {
     this.text = checkNotNull(text);
-    setLines(ImmutableList.copyOf(Newlines.lineIterator(text)));
-    ImmutableList<Tok> toks = buildToks(text);
-    positionToColumnMap = makePositionToColumnMap(toks);
-    tokens = buildTokens(toks);
-    ImmutableRangeMap.Builder<Integer, Token> tokenLocations = ImmutableRangeMap.builder();
-    for (Token token : tokens) {
-      Input.Tok end = JavaOutput.endTok(token);
-      int upper = end.getPosition();
-      if (!end.getText().isEmpty()) {
-        upper += end.length() - 1;
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.LEX)) {
+      setLines(ImmutableList.copyOf(Newlines.lineIterator(text)));
+      ImmutableList<Tok> toks = buildToks(text);
+      tokPositions = new int[toks.size()];
+      tokColumns = new int[toks.size()];
+      for (int i = 0; i < toks.size(); i++) {
+        tokPositions[i] = toks.get(i).getPosition();
+        tokColumns[i] = toks.get(i).getColumn();
       }
-      tokenLocations.put(Range.closed(JavaOutput.startTok(token).getPosition(), upper), token);
-    }
-    positionTokenMap = tokenLocations.build();
-
-    // adjust kN for EOF
-    kToToken = new Token[kN + 1];
-    for (Token token : tokens) {
-      for (Input.Tok tok : token.getToksBefore()) {
-        if (tok.getIndex() < 0) {
-          continue;
+      tokens = buildTokens(toks);
+      tokenStarts = new int[tokens.size()];
+      tokenEnds = new int[tokens.size()];
+      for (int i = 0; i < tokens.size(); i++) {
+        Token token = tokens.get(i);
+        Input.Tok end = JavaOutput.endTok(token);
+        int upper = end.getPosition();
+        if (!end.getText().isEmpty()) {
+          upper += end.length() - 1;
         }
-        kToToken[tok.getIndex()] = token;
+        tokenStarts[i] = JavaOutput.startTok(token).getPosition();
+        tokenEnds[i] = upper;
       }
-      kToToken[token.getTok().getIndex()] = token;
-      for (Input.Tok tok : token.getToksAfter()) {
-        if (tok.getIndex() < 0) {
-          continue;
+
+      // adjust kN for EOF
+      kToToken = new Token[kN + 1];
+      for (Token token : tokens) {
+        for (Input.Tok tok : token.getToksBefore()) {
+          if (tok.getIndex() < 0) {
+            continue;
+          }
+          kToToken[tok.getIndex()] = token;
+        }
+        kToToken[token.getTok().getIndex()] = token;
+        for (Input.Tok tok : token.getToksAfter()) {
+          if (tok.getIndex() < 0) {
+            continue;
+          }
+          kToToken[tok.getIndex()] = token;
         }
-        kToToken[tok.getIndex()] = token;
       }
+      StatsRecorder.countTokens(tokens.size());
     }
   }
 
-  private static ImmutableMap<Integer, Integer> makePositionToColumnMap(List<Tok> toks) {
-    ImmutableMap.Builder<Integer, Integer> builder = ImmutableMap.builder();
-    for (Tok tok : toks) {
-      builder.put(tok.getPosition(), tok.getColumn());
-    }
-    return builder.buildOrThrow();
-  }
-
   /**
    * Get the input text.
    *
@@ -334,8 +332,9 @@ final class JavaInput extends Input {
   }
 
   @Override
-  public ImmutableMap<Integer, Integer> getPositionToColumnMap() {
-    return positionToColumnMap;
+  public int getPositionColumn(int position) {
+    int i = Arrays.binarySearch(tokPositions, position);
+    return i >= 0 ? tokColumns[i] : -1;
   }
 
   /** Lex the input and build the list of toks. */
@@ -356,35 +355,39 @@ final class JavaInput extends Input {
   static ImmutableList<Tok> buildToks(String text, ImmutableSet<TokenKind> stopTokens)
       throws FormatterException {
     stopTokens = ImmutableSet.<TokenKind>builder().addAll(stopTokens).add(TokenKind.EOF).build();
-    Context context = new Context();
-    Options.instance(context).put("--enable-preview", "true");
-    JavaFileManager fileManager = new JavacFileManager(context, false, UTF_8);
-    context.put(JavaFileManager.class, fileManager);
-    DiagnosticCollector<JavaFileObject> diagnosticCollector = new DiagnosticCollector<>();
-    context.put(DiagnosticListener.class, diagnosticCollector);
-    Log log = Log.instance(context);
-    log.useSource(
-        new SimpleJavaFileObject(URI.create("Source.java"), Kind.SOURCE) {
-          @Override
-          public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
-            return text;
-          }
-        });
-    DeferredDiagnosticHandler diagnostics = deferredDiagnosticHandler(log);
-    ImmutableList<RawTok> rawToks = JavacTokens.getTokens(text, context, stopTokens);
+    ImmutableList<RawTok> rawToks;
     Collection<JCDiagnostic> ds;
+    ReusableContext reusableContext = ReusableContext.acquire();
     try {
-      @SuppressWarnings("unchecked")
-      var extraLocalForSuppression = (Collection<JCDiagnostic>) GET_DIAGNOSTICS.invoke(diagnostics);
-      ds = extraLocalForSuppression;
-    } catch (ReflectiveOperationException e) {
-      throw new LinkageError(e.getMessage(), e);
+      Context context = reusableContext.context();
+      Log log = Log.instance(context);
+      log.useSource(
+          new SimpleJavaFileObject(URI.create("Source.java"), Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
+              return text;
+            }
+          });
+      DeferredDiagnosticHandler diagnostics = deferredDiagnosticHandler(log);
+      try {
+        rawToks = JavacTokens.getTokens(text, context, stopTokens);
+        @SuppressWarnings("unchecked")
+        var extraLocalForSuppression =
+            (Collection<JCDiagnostic>) GET_DIAGNOSTICS.invoke(diagnostics);
+        ds = extraLocalForSuppression;
+      } catch (ReflectiveOperationException e) {
+        throw new LinkageError(e.getMessage(), e);
+      } finally {
+        log.popDiagnosticHandler(diagnostics);
+      }
+    } finally {
+      reusableContext.release();
     }
     if (ds.stream().anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR)) {
       return ImmutableList.of(new Tok(0, "", "", 0, 0, true, null)); // EOF
     }
     int kN = 0;
-    List<Tok> toks = new ArrayList<>();
+    List<Tok> toks = new ArrayList<>(rawToks.size());
     int charI = 0;
     int columnI = 0;
     for (RawTok t : rawToks) {
@@ -392,101 +395,142 @@ final class JavaInput extends Input {
         break;
       }
       int charI0 = t.pos();
-      // Get string, possibly with Unicode escapes.
-      String originalTokText = text.substring(charI0, t.endPos());
-      String tokText =
-          t.kind() == TokenKind.STRINGLITERAL
-              ? t.stringVal() // Unicode escapes removed.
-              : originalTokText;
-      char tokText0 = tokText.charAt(0); // The token's first character.
-      final boolean isToken; // Is this tok a token?
-      final boolean isNumbered; // Is this tok numbered? (tokens and comments)
-      String extraNewline = null; // Extra newline at end?
-      List<String> strings = new ArrayList<>();
+      int charI1 = t.endPos();
+      // The token's first character, after removing Unicode escapes from string literals.
+      char tokText0 = t.kind() == TokenKind.STRINGLITERAL ? '"' : text.charAt(charI0);
       if (Character.isWhitespace(tokText0)) {
-        isToken = false;
-        isNumbered = false;
-        Iterator<String> it = Newlines.lineIterator(originalTokText);
-        while (it.hasNext()) {
-          String line = it.next();
-          String newline = Newlines.getLineEnding(line);
-          if (newline != null) {
-            String spaces = line.substring(0, line.length() - newline.length());
-            if (!spaces.isEmpty()) {
-              strings.add(spaces);
-            }
-            strings.add(newline);
-          } else if (!line.isEmpty()) {
-            strings.add(line);
+        // Split whitespace into newlines and the runs of other characters between them.
+        int pieces = 0;
+        for (int i = charI0; i < charI1; i = endOfPiece(text, i, charI1)) {
+          pieces++;
+        }
+        if (pieces == 1) {
+          String str = substring(text, charI0, charI1);
+          toks.add(new Tok(-1, str, str, charI, columnI, false, null));
+          charI += str.length();
+          columnI = updateColumn(columnI, text, charI0, charI1);
+        } else {
+          for (int i = charI0; i < charI1; ) {
+            int j = endOfPiece(text, i, charI1);
+            String str = substring(text, i, j);
+            toks.add(new Tok(-1, str, str, charI, columnI, false, null));
+            charI += str.length();
+            columnI = updateColumn(columnI, text, charI0, charI1);
+            i = j;
           }
         }
-      } else if (tokText.startsWith("'") || tokText.startsWith("\"")) {
-        isToken = true;
-        isNumbered = true;
-        strings.add(originalTokText);
-      } else if (tokText.startsWith("//") || tokText.startsWith("/*")) {
+      } else if (tokText0 == '\'' || tokText0 == '"') {
+        String originalTokText = substring(text, charI0, charI1);
+        String tokText =
+            t.kind() == TokenKind.STRINGLITERAL
+                ? t.stringVal() // Unicode escapes removed.
+                : originalTokText;
+        toks.add(new Tok(kN++, originalTokText, tokText, charI, columnI, true, t.kind()));
+        charI += originalTokText.length();
+        columnI = updateColumn(columnI, text, charI0, charI1);
+      } else if (text.startsWith("//", charI0) || text.startsWith("/*", charI0)) {
         // For compatibility with an earlier lexer, the newline after a // comment is its own tok.
-        if (tokText.startsWith("//")
-            && (originalTokText.endsWith("\n") || originalTokText.endsWith("\r"))) {
-          extraNewline = Newlines.getLineEnding(originalTokText);
-          tokText = tokText.substring(0, tokText.length() - extraNewline.length());
-          originalTokText =
-              originalTokText.substring(0, originalTokText.length() - extraNewline.length());
+        String extraNewline = null;
+        if (text.startsWith("//", charI0)
+            && (text.charAt(charI1 - 1) == '\n' || text.charAt(charI1 - 1) == '\r')) {
+          extraNewline =
+              text.startsWith("\r\n", charI1 - 2) ? "\r\n" : substring(text, charI1 - 1, charI1);
+          charI1 -= extraNewline.length();
+        }
+        String str = substring(text, charI0, charI1);
+        toks.add(new Tok(kN++, str, str, charI, columnI, false, t.kind()));
+        charI += str.length();
+        columnI = updateColumn(columnI, text, charI0, charI1);
+        if (extraNewline != null) {
+          toks.add(new Tok(-1, extraNewline, extraNewline, charI, columnI, false, null));
+          columnI = 0;
+          charI += extraNewline.length();
         }
-        isToken = false;
-        isNumbered = true;
-        strings.add(originalTokText);
       } else if (Character.isJavaIdentifierStart(tokText0)
           || Character.isDigit(tokText0)
-          || (tokText0 == '.' && tokText.length() > 1 && Character.isDigit(tokText.charAt(1)))) {
+          || (tokText0 == '.'
+              && charI1 - charI0 > 1
+              && Character.isDigit(text.charAt(charI0 + 1)))) {
         // Identifier, keyword, or numeric literal (a dot may begin a number, as in .2D).
-        isToken = true;
-        isNumbered = true;
-        strings.add(tokText);
+        String str = substring(text, charI0, charI1);
+        toks.add(new Tok(kN++, str, str, charI, columnI, true, t.kind()));
+        charI += str.length();
+        columnI = updateColumn(columnI, text, charI0, charI1);
+      } else if (charI1 - charI0 == 1) {
+        String str = substring(text, charI0, charI1);
+        toks.add(new Tok(kN++, str, str, charI, columnI, true, t.kind()));
+        charI += str.length();
+        columnI = updateColumn(columnI, text, charI0, charI1);
       } else {
         // Other tokens ("+" or "++" or ">>" are broken into one-character toks, because ">>"
         // cannot be lexed without syntactic knowledge. This implementation fails if the token
         // contains Unicode escapes.
-        isToken = true;
-        isNumbered = true;
-        for (char c : tokText.toCharArray()) {
-          strings.add(String.valueOf(c));
-        }
-      }
-      if (strings.size() == 1) {
-        toks.add(
-            new Tok(
-                isNumbered ? kN++ : -1,
-                originalTokText,
-                tokText,
-                charI,
-                columnI,
-                isToken,
-                t.kind()));
-        charI += originalTokText.length();
-        columnI = updateColumn(columnI, originalTokText);
-
-      } else {
-        if (strings.size() != 1 && !tokText.equals(originalTokText)) {
-          throw new FormatterException(
-              "Unicode escapes not allowed in whitespace or multi-character operators");
-        }
-        for (String str : strings) {
-          toks.add(new Tok(isNumbered ? kN++ : -1, str, str, charI, columnI, isToken, null));
+        for (int i = charI0; i < charI1; i++) {
+          String str = substring(text, i, i + 1);
+          toks.add(new Tok(kN++, str, str, charI, columnI, true, null));
           charI += str.length();
-          columnI = updateColumn(columnI, originalTokText);
+          columnI = updateColumn(columnI, text, charI0, charI1);
         }
       }
-      if (extraNewline != null) {
-        toks.add(new Tok(-1, extraNewline, extraNewline, charI, columnI, false, null));
-        columnI = 0;
-        charI += extraNewline.length();
-      }
     }
     toks.add(new Tok(kN, "", "", charI, columnI, true, null)); // EOF tok.
     return ImmutableList.copyOf(toks);
   }
 
+  /**
+   * Returns the end of the piece of whitespace starting at {@code start}: either a newline, or a
+   * run of other whitespace up to the next newline or {@code end}.
+   */
+  private static int endOfPiece(String text, int start, int end) {
+    int newline = Newlines.hasNewlineAt(text, start);
+    if (newline != -1) {
+      return start + newline;
+    }
+    int i = start;
+    while (i < end && text.charAt(i) != '\n' && text.charAt(i) != '\r') {
+      i++;
+    }
+    return i;
+  }
+
+  // Most toks are one-character operators, newlines, or indentation, so the strings for those are
+  // shared instead of copied out of the input for each tok.
+  private static final String[] ASCII = new String[128];
+  private static final String[] SPACES = new String[65];
+
+  static {
+    for (char c = 0; c < ASCII.length; c++) {
+      ASCII[c] = String.valueOf(c).intern();
+    }
+    for (int i = 0; i < SPACES.length; i++) {
+      SPACES[i] = " ".repeat(i);
+    }
+  }
+
+  /** Returns the text between {@code start} and {@code end}, sharing common strings. */
+  private static String substring(String text, int start, int end) {
+    int length = end - start;
+    if (length == 1 && text.charAt(start) < ASCII.length) {
+      return ASCII[text.charAt(start)];
+    }
+    if (length == 2 && text.charAt(start) == '\r' && text.charAt(start + 1) == '\n') {
+      return "\r\n";
+    }
+    if (length < SPACES.length && isSpaces(text, start, end)) {
+      return SPACES[length];
+    }
+    return text.substring(start, end);
+  }
+
+  private static boolean isSpaces(String text, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (text.charAt(i) != ' ') {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private static final Constructor<DeferredDiagnosticHandler>
       DEFERRED_DIAGNOSTIC_HANDLER_CONSTRUCTOR = getDeferredDiagnosticHandlerConstructor();
 
@@ -520,14 +564,15 @@ final class JavaInput extends Input {
     }
   }
 
-  private static int updateColumn(int columnI, String originalTokText) {
-    Integer last = Iterators.getLast(Newlines.lineOffsetIterator(originalTokText));
-    if (last > 0) {
-      columnI = originalTokText.length() - last;
-    } else {
-      columnI += originalTokText.length();
+  /** Returns the column after the original text of a tok, between {@code start} and {@code end}. */
+  private static int updateColumn(int columnI, String text, int start, int end) {
+    for (int i = end - 1; i >= start; i--) {
+      char c = text.charAt(i);
+      if (c == '\n' || c == '\r') {
+        return end - (i + 1);
+      }
     }
-    return columnI;
+    return columnI + (end - start);
   }
 
   private static ImmutableList<Token> buildTokens(List<Tok> toks) {
@@ -628,13 +673,28 @@ final class JavaInput extends Input {
         characterRange.isEmpty()
             ? Range.closedOpen(characterRange.lowerEndpoint(), characterRange.lowerEndpoint() + 1)
             : characterRange;
-    ImmutableCollection<Token> enclosed =
-        getPositionTokenMap().subRangeMap(nonEmptyRange).asMapOfRanges().values();
-    if (enclosed.isEmpty()) {
+    // The Tokens whose ranges intersect [lo, hi).
+    int lo = nonEmptyRange.lowerEndpoint();
+    int hi = nonEmptyRange.upperEndpoint();
+    int first = floorIndex(tokenStarts, lo);
+    if (first < 0 || tokenEnds[first] < lo) {
+      first++;
+    }
+    int last = floorIndex(tokenStarts, hi - 1);
+    if (first > last) {
       return EMPTY_RANGE;
     }
     return Range.closedOpen(
-        enclosed.iterator().next().getTok().getIndex(), getLast(enclosed).getTok().getIndex() + 1);
+        tokens.get(first).getTok().getIndex(), tokens.get(last).getTok().getIndex() + 1);
+  }
+
+  /**
+   * Returns the index of the last element of the sorted {@code array} that is at most {@code key},
+   * or {@code -1} if there is none.
+   */
+  private static int floorIndex(int[] array, int key) {
+    int i = Arrays.binarySearch(array, key);
+    return i >= 0 ? i : -i - 2;
   }
 
   /**
@@ -668,15 +728,13 @@ final class JavaInput extends Input {
   }
 
   /**
-   * Get the navigable map from position to {@link Token}. Used to look for tokens following a given
-   * one, and to implement the --offset and --length flags to reformat a character range in the
-   * input file.
-   *
-   * @return the navigable map from position to {@link Token}
+   * Get the {@link Token} at a position. Used to look for tokens following a given one, and to find
+   * the comments before a token.
    */
   @Override
-  public ImmutableRangeMap<Integer, Token> getPositionTokenMap() {
-    return positionTokenMap;
+  public @Nullable Token getPositionToken(int position) {
+    int i = floorIndex(tokenStarts, position);
+    return i >= 0 && position <= tokenEnds[i] ? tokens.get(i) : null;
   }
 
   @Override
@@ -707,6 +765,11 @@ final class JavaInput extends Input {
     this.unit = unit;
   }
 
+  /** Returns the compilation unit parsed from this input, or {@code null} if it isn't set yet. */
+  @Nullable JCCompilationUnit getCompilationUnit() {
+    return unit;
+  }
+
   RangeSet<Integer> characterRangesToTokenRanges(Collection<Range<Integer>> characterRanges)
       throws FormatterException {
     RangeSet<Integer> tokenRangeSet = TreeRangeSet.create();
@@ -168,7 +168,6 @@ import java.util.Deque;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
@@ -2727,17 +2726,17 @@ class JavaInputAstVisitor extends TreePathScanner<Void, Void> {
       ExpressionTree expression,
       List<ExpressionTree> operands,
       List<String> operators) {
-    if (expression instanceof BinaryTree binaryTree) {
-
-      if (precedence(binaryTree) == precedence) {
-        walkInfix(precedence, binaryTree.getLeftOperand(), operands, operators);
-        operators.add(operatorName(expression));
-        walkInfix(precedence, binaryTree.getRightOperand(), operands, operators);
-      } else {
-        operands.add(expression);
-      }
-    } else {
-      operands.add(expression);
+    // Binary operators are left-associative, so long chains of them are deeply nested on the left.
+    // Walk down the left operands iteratively, and then visit the right operands in order.
+    Deque<BinaryTree> chain = new ArrayDeque<>();
+    while (expression instanceof BinaryTree binaryTree && precedence(binaryTree) == precedence) {
+      chain.push(binaryTree);
+      expression = binaryTree.getLeftOperand();
+    }
+    operands.add(expression);
+    for (BinaryTree binaryTree : chain) {
+      operators.add(operatorName(binaryTree));
+      walkInfix(precedence, binaryTree.getRightOperand(), operands, operators);
     }
   }
 
@@ -3147,7 +3146,11 @@ class JavaInputAstVisitor extends TreePathScanner<Void, Void> {
         dotExpressionArgsAndParen(
             e, tyargIndent, (trailingDereferences || needDot) ? plusFour : ZERO);
       }
-      length += getLength(e, getCurrentPath());
+      if (length <= minLength) {
+        // Only whether the chain is longer than minLength matters, and the start position of each
+        // item is found by walking down to the start of the chain, so stop measuring once it is.
+        length += getLength(e, getCurrentPath());
+      }
       needDot = true;
     }
     if (!needDot0) {
@@ -3575,9 +3578,10 @@ class JavaInputAstVisitor extends TreePathScanner<Void, Void> {
     return size;
   }
 
-  private Integer actualColumn(ExpressionTree expression) {
-    Map<Integer, Integer> positionToColumnMap = builder.getInput().getPositionToColumnMap();
-    return positionToColumnMap.get(builder.actualStartColumn(getStartPosition(expression)));
+  private int actualColumn(ExpressionTree expression) {
+    return builder
+        .getInput()
+        .getPositionColumn(builder.actualStartColumn(getStartPosition(expression)));
   }
 
   /** Returns true if {@code atLeastM} of the expressions in the given column are the same kind. */
@@ -3968,7 +3972,7 @@ class JavaInputAstVisitor extends TreePathScanner<Void, Void> {
 
   private OptionalInt javadocPosition(Tree bodyDeclaration) {
     int position = ((JCTree) bodyDeclaration).getStartPosition();
-    Input.Token token = builder.getInput().getPositionTokenMap().get(position);
+    Input.Token token = builder.getInput().getPositionToken(position);
     if (token == null) {
       return OptionalInt.empty();
     }
@@ -3997,7 +4001,7 @@ class JavaInputAstVisitor extends TreePathScanner<Void, Void> {
   }
 
   private static Optional<? extends Input.Token> getNextToken(Input input, int position) {
-    return Optional.ofNullable(input.getPositionTokenMap().get(position));
+    return Optional.ofNullable(input.getPositionToken(position));
   }
 
   /** Does this list of trees end with the specified token? */
@@ -4090,7 +4094,7 @@ class JavaInputAstVisitor extends TreePathScanner<Void, Void> {
    * @param node the ASTNode holding the input position
    */
   private void sync(Tree node) {
-    builder.sync(((JCTree) node).getStartPosition());
+    builder.sync(getStartPosition(node));
   }
 
   final BreakTag genSym() {
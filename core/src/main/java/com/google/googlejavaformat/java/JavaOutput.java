@@ -14,6 +14,8 @@
 
 package com.google.googlejavaformat.java;
 
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.Math.max;
 import static java.lang.Math.min;
 import static java.util.Comparator.comparing;
 
@@ -31,10 +33,15 @@ import com.google.googlejavaformat.Input.Token;
 import com.google.googlejavaformat.Newlines;
 import com.google.googlejavaformat.OpsBuilder.BlankLineWanted;
 import com.google.googlejavaformat.Output;
+import com.google.googlejavaformat.java.FormatStats.Phase;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.jspecify.annotations.Nullable;
 
 /*
  * Throughout this file, {@code i} is an index for input lines, {@code j} is an index for output
@@ -54,12 +61,17 @@ public final class JavaOutput extends Output {
   private final RangeSet<Integer> partialFormatRanges = TreeRangeSet.create();
 
   private final List<String> mutableLines = new ArrayList<>();
+  private int lineCount = 0; // The number of complete lines output.
+  private @Nullable Writer sink; // If set, complete lines are written here instead of kept.
   private final int kN; // The number of tokens or comments in the input, excluding the EOF.
   private int iLine = 0; // Closest corresponding line number on input.
   private int lastK = -1; // Last {@link Tok} index output.
   private int newlinesPending = 0;
   private StringBuilder lineBuilder = new StringBuilder();
   private StringBuilder spacesPending = new StringBuilder();
+  // The range of Tok indices on the line being built, which is recorded when the line is done.
+  private int lineLo = -1;
+  private int lineHi = -1;
 
   /**
    * {@code JavaOutput} constructor.
@@ -74,6 +86,19 @@ public final class JavaOutput extends Output {
     kN = javaInput.getkN();
   }
 
+  /**
+   * Writes each complete line of output to the given {@link Writer}, followed by the line
+   * separator, instead of keeping it. The lines and their token ranges aren't recorded, so the
+   * output can't be used to compute {@link Replacement}s. This must be called before anything is
+   * appended.
+   *
+   * <p>{@link IOException}s from the writer are rethrown as {@link UncheckedIOException}s.
+   */
+  void streamTo(Writer sink) {
+    checkState(lineCount == 0 && lineBuilder.length() == 0, "output has already been appended");
+    this.sink = sink;
+  }
+
   @Override
   public void blankLine(int k, BlankLineWanted wanted) {
     if (blankLines.containsKey(k)) {
@@ -92,14 +117,15 @@ public final class JavaOutput extends Output {
 
   // TODO(user): Add invariant.
   @Override
-  public void append(String text, Range<Integer> range) {
-    if (!range.isEmpty()) {
+  public void append(String text, int lo, int hi) {
+    boolean hasToks = lo < hi;
+    if (hasToks) {
       boolean sawNewlines = false;
       // Skip over input line we've passed.
       int iN = javaInput.getLineCount();
       while (iLine < iN
           && (javaInput.getRanges(iLine).isEmpty()
-              || javaInput.getRanges(iLine).upperEndpoint() <= range.lowerEndpoint())) {
+              || javaInput.getRanges(iLine).upperEndpoint() <= lo)) {
         if (javaInput.getRanges(iLine).isEmpty()) {
           // Skipped over a blank line.
           sawNewlines = true;
@@ -125,7 +151,6 @@ public final class JavaOutput extends Output {
       }
       spacesPending = new StringBuilder();
     } else {
-      boolean rangesSet = false;
       int textN = text.length();
       for (int i = 0; i < textN; i++) {
         char c = text.charAt(i);
@@ -148,11 +173,11 @@ public final class JavaOutput extends Output {
           default:
             while (newlinesPending > 0) {
               // drop leading blank lines
-              if (!mutableLines.isEmpty() || lineBuilder.length() > 0) {
-                mutableLines.add(lineBuilder.toString());
+              if (lineCount > 0 || lineBuilder.length() > 0) {
+                recordLineRange();
+                addLine(lineBuilder.toString());
               }
               lineBuilder = new StringBuilder();
-              rangesSet = false;
               --newlinesPending;
             }
             if (spacesPending.length() > 0) {
@@ -160,20 +185,42 @@ public final class JavaOutput extends Output {
               spacesPending = new StringBuilder();
             }
             lineBuilder.append(c);
-            if (!range.isEmpty()) {
-              if (!rangesSet) {
-                while (ranges.size() <= mutableLines.size()) {
-                  ranges.add(Formatter.EMPTY_RANGE);
-                }
-                ranges.set(mutableLines.size(), union(ranges.get(mutableLines.size()), range));
-                rangesSet = true;
-              }
+            if (hasToks) {
+              lineLo = lineLo < 0 ? lo : min(lineLo, lo);
+              lineHi = max(lineHi, hi);
             }
         }
       }
     }
-    if (!range.isEmpty()) {
-      lastK = range.upperEndpoint();
+    if (hasToks) {
+      lastK = hi;
+    }
+  }
+
+  /** Records the range of Tok indices on the line being built, if it has any. */
+  private void recordLineRange() {
+    if (lineLo < 0 || sink != null) {
+      return;
+    }
+    while (ranges.size() <= lineCount) {
+      ranges.add(Formatter.EMPTY_RANGE);
+    }
+    ranges.set(lineCount, Range.closedOpen(lineLo, lineHi));
+    lineLo = -1;
+    lineHi = -1;
+  }
+
+  private void addLine(String line) {
+    lineCount++;
+    if (sink == null) {
+      mutableLines.add(line);
+      return;
+    }
+    try {
+      sink.write(line);
+      sink.write(lineSeparator);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
     }
   }
 
@@ -182,11 +229,18 @@ public final class JavaOutput extends Output {
     spacesPending.append(Strings.repeat(" ", indent));
   }
 
-  /** Flush any incomplete last line, then add the EOF token into our data structures. */
+  /**
+   * Flush any incomplete last line, then add the EOF token into our data structures. If the output
+   * is {@linkplain #streamTo streamed}, the last line is written instead.
+   */
   public void flush() {
     String lastLine = lineBuilder.toString();
+    recordLineRange();
     if (!CharMatcher.whitespace().matchesAllOf(lastLine)) {
-      mutableLines.add(lastLine);
+      addLine(lastLine);
+    }
+    if (sink != null) {
+      return;
     }
     int jN = mutableLines.size();
     Range<Integer> eofRange = Range.closedOpen(kN, kN + 1);
@@ -336,16 +390,18 @@ public final class JavaOutput extends Output {
   }
 
   public static String applyReplacements(String input, List<Replacement> replacements) {
-    replacements = new ArrayList<>(replacements);
-    replacements.sort(comparing((Replacement r) -> r.replaceRange().lowerEndpoint()).reversed());
-    StringBuilder writer = new StringBuilder(input);
-    for (Replacement replacement : replacements) {
-      writer.replace(
-          replacement.replaceRange().lowerEndpoint(),
-          replacement.replaceRange().upperEndpoint(),
-          replacement.replacementString());
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.REPLACEMENTS)) {
+      replacements = new ArrayList<>(replacements);
+      replacements.sort(comparing((Replacement r) -> r.replaceRange().lowerEndpoint()).reversed());
+      StringBuilder writer = new StringBuilder(input);
+      for (Replacement replacement : replacements) {
+        writer.replace(
+            replacement.replaceRange().lowerEndpoint(),
+            replacement.replaceRange().upperEndpoint(),
+            replacement.replacementString());
+      }
+      return writer.toString();
     }
-    return writer.toString();
   }
 
   /** The earliest non-whitespace Tok in the Token. */
@@ -373,10 +429,6 @@ public final class JavaOutput extends Output {
     return text.startsWith("//") || text.startsWith("/*");
   }
 
-  private static Range<Integer> union(Range<Integer> x, Range<Integer> y) {
-    return x.isEmpty() ? y : y.isEmpty() ? x : x.span(y).canonical(DiscreteDomain.integers());
-  }
-
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
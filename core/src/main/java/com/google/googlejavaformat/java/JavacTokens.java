@@ -14,7 +14,6 @@
 
 package com.google.googlejavaformat.java;
 
-import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 
 import com.google.common.collect.ImmutableList;
@@ -35,7 +34,7 @@ final class JavacTokens {
 
   /** The lexer eats terminal comments, so feed it one we don't care about. */
   // TODO(b/33103797): fix javac and remove the work-around
-  private static final CharSequence EOF_COMMENT = "\n//EOF";
+  private static final String EOF_COMMENT = "\n//EOF";
 
   /**
    * An unprocessed input token, including whitespace and comments.
@@ -54,7 +53,9 @@ final class JavacTokens {
       return ImmutableList.of();
     }
     ScannerFactory fac = ScannerFactory.instance(context);
-    char[] buffer = (source + EOF_COMMENT).toCharArray();
+    char[] buffer = new char[source.length() + EOF_COMMENT.length()];
+    source.getChars(0, source.length(), buffer, 0);
+    EOF_COMMENT.getChars(0, EOF_COMMENT.length(), buffer, source.length());
     CommentSavingTokenizer tokenizer = new CommentSavingTokenizer(fac, buffer, buffer.length);
     Scanner scanner = new AccessibleScanner(fac, tokenizer);
     ImmutableList.Builder<RawTok> tokens = ImmutableList.builder();
@@ -64,13 +65,12 @@ final class JavacTokens {
       scanner.nextToken();
       Token t = scanner.token();
       if (t.comments != null) {
-        for (CommentWithTextAndPosition c : getComments(t, tokenizer.comments())) {
-          if (last < c.getSourcePos(0)) {
-            tokens.add(new RawTok(null, null, last, c.getSourcePos(0)));
+        for (CommentPosition c : getComments(t, tokenizer.comments())) {
+          if (last < c.pos()) {
+            tokens.add(new RawTok(null, null, last, c.pos()));
           }
-          tokens.add(
-              new RawTok(null, null, c.getSourcePos(0), c.getSourcePos(0) + c.text().length()));
-          last = c.getSourcePos(0) + c.text().length();
+          tokens.add(new RawTok(null, null, c.pos(), c.endPos()));
+          last = c.endPos();
         }
       }
       if (stopTokens.contains(t.kind)) {
@@ -96,8 +96,8 @@ final class JavacTokens {
     return tokens.build();
   }
 
-  private static ImmutableList<CommentWithTextAndPosition> getComments(
-      Token token, Map<Comment, CommentWithTextAndPosition> comments) {
+  private static ImmutableList<CommentPosition> getComments(
+      Token token, Map<Comment, CommentPosition> comments) {
     if (token.comments == null) {
       return ImmutableList.of();
     }
@@ -105,70 +105,32 @@ final class JavacTokens {
     return token.comments.stream().map(comments::get).collect(toImmutableList()).reverse();
   }
 
-  /** A {@link JavaTokenizer} that saves comments. */
+  /** A {@link JavaTokenizer} that saves the positions of comments. */
   private static class CommentSavingTokenizer extends JavaTokenizer {
 
-    private final Map<Comment, CommentWithTextAndPosition> comments = new HashMap<>();
+    private final Map<Comment, CommentPosition> comments = new HashMap<>();
 
     CommentSavingTokenizer(ScannerFactory fac, char[] buffer, int length) {
       super(fac, buffer, length);
     }
 
-    Map<Comment, CommentWithTextAndPosition> comments() {
+    Map<Comment, CommentPosition> comments() {
       return comments;
     }
 
     @Override
     protected Comment processComment(int pos, int endPos, CommentStyle style) {
-      char[] buf = getRawCharactersReflectively(pos, endPos);
       Comment comment = super.processComment(pos, endPos, style);
-      CommentWithTextAndPosition commentWithTextAndPosition =
-          new CommentWithTextAndPosition(pos, endPos, new String(buf));
-      comments.put(comment, commentWithTextAndPosition);
+      comments.put(comment, new CommentPosition(pos, endPos));
       return comment;
     }
-
-    private char[] getRawCharactersReflectively(int beginIndex, int endIndex) {
-      Object instance;
-      try {
-        instance = JavaTokenizer.class.getDeclaredField("reader").get(this);
-      } catch (ReflectiveOperationException e) {
-        instance = this;
-      }
-      try {
-        return (char[])
-            instance
-                .getClass()
-                .getMethod("getRawCharacters", int.class, int.class)
-                .invoke(instance, beginIndex, endIndex);
-      } catch (ReflectiveOperationException e) {
-        throw new LinkageError(e.getMessage(), e);
-      }
-    }
   }
 
-  /** A {@link Comment} that saves its text and start position. */
-  private record CommentWithTextAndPosition(int pos, int endPos, String text) {
-    /**
-     * Returns the source position of the character at index {@code index} in the comment text.
-     *
-     * <p>The handling of javadoc comments in javac has more logic to skip over leading whitespace
-     * and '*' characters when indexing into doc comments, but we don't need any of that.
-     */
-    int getSourcePos(int index) {
-      checkArgument(
-          0 <= index && index < (endPos - pos),
-          "Expected %s in the range [0, %s)",
-          index,
-          endPos - pos);
-      return pos + index;
-    }
-
-    @Override
-    public String toString() {
-      return String.format("Comment: '%s'", text());
-    }
-  }
+  /**
+   * The start and end position of a {@link Comment}. The text of a comment is only needed as part
+   * of the input, so it isn't copied out of the lexer.
+   */
+  private record CommentPosition(int pos, int endPos) {}
 
   // Scanner(ScannerFactory, JavaTokenizer) is protected
   private static class AccessibleScanner extends Scanner {
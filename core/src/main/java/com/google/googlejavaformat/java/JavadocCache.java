@@ -0,0 +1,83 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.googlejavaformat.java.javadoc.JavadocFormatter;
+
+/**
+ * An in-memory cache of formatted javadoc comments, for sharing between the inputs formatted by one
+ * process. Many javadoc comments in a large codebase are identical (license-like class headers,
+ * boilerplate on overrides, generated code), and each is only formatted once for each indent.
+ *
+ * <p>Entries are keyed by the comment text, which also determines whether it is a classic or a
+ * Markdown comment, and by its indent. The cache holds at most a given number of characters of
+ * comment text and formatted output, and evicts the least recently used entries beyond that. It is
+ * safe to use from several threads. See {@link JavaFormatterOptions.Builder#javadocCache}.
+ */
+public final class JavadocCache {
+
+  /** The default maximum number of characters held by the cache. */
+  public static final long DEFAULT_MAX_CHARACTERS = 16_000_000;
+
+  private record Key(String text, int blockIndent) {}
+
+  private final Cache<Key, String> cache;
+
+  private JavadocCache(long maxCharacters) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxCharacters)
+            .weigher((Key key, String value) -> key.text().length() + value.length())
+            .recordStats()
+            .build();
+  }
+
+  /** Returns a new cache that holds at most {@link #DEFAULT_MAX_CHARACTERS} characters. */
+  public static JavadocCache create() {
+    return create(DEFAULT_MAX_CHARACTERS);
+  }
+
+  /** Returns a new cache that holds at most the given number of characters. */
+  public static JavadocCache create(long maxCharacters) {
+    return new JavadocCache(maxCharacters);
+  }
+
+  /**
+   * Returns the result of {@link JavadocFormatter#formatJavadoc} for the given comment, formatting
+   * it if it isn't cached. Threads that miss on the same comment concurrently may each format it.
+   */
+  String formatJavadoc(String text, int blockIndent) {
+    Key key = new Key(text, blockIndent);
+    String formatted = cache.getIfPresent(key);
+    if (formatted == null) {
+      formatted = JavadocFormatter.formatJavadoc(text, blockIndent);
+      cache.put(key, formatted);
+    }
+    return formatted;
+  }
+
+  /** Returns the number of hits and misses, and of evicted entries, since the cache was created. */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /** Returns the number of formatted comments in the cache. */
+  public long size() {
+    return cache.size();
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import static com.google.googlejavaformat.java.Trees.getStartPosition;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.googlejavaformat.Input;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Predicts the column that each javadoc comment will be formatted at, before the layout is
+ * computed, so that the comments can be formatted ahead of time.
+ *
+ * <p>Only the comments before the declarations of a file's packages, modules and classes, and of
+ * the members of those classes and of their member classes, are predicted. Each of those is
+ * indented by one block indent for each class body it is in. Comments in other places (e.g. in
+ * local or anonymous classes) have no prediction.
+ */
+final class JavadocColumns {
+
+  /**
+   * Returns the predicted column of the javadoc comments before the declarations in the given
+   * compilation unit, in the order they appear.
+   */
+  static ImmutableMap<Input.Tok, Integer> predict(
+      JavaInput javaInput, JCCompilationUnit unit, int indentationMultiplier) {
+    Map<Input.Tok, Integer> columns = new LinkedHashMap<>();
+    if (unit.getPackage() != null) {
+      add(javaInput, unit.getPackage(), 0, columns);
+    }
+    addDeclarations(javaInput, unit.getTypeDecls(), 0, 2 * indentationMultiplier, columns);
+    return ImmutableMap.copyOf(columns);
+  }
+
+  private static void addDeclarations(
+      JavaInput javaInput,
+      List<? extends JCTree> declarations,
+      int column,
+      int blockIndent,
+      Map<Input.Tok, Integer> columns) {
+    for (JCTree declaration : declarations) {
+      add(javaInput, declaration, column, columns);
+      if (declaration instanceof JCClassDecl cls) {
+        addDeclarations(javaInput, cls.getMembers(), column + blockIndent, blockIndent, columns);
+      }
+    }
+  }
+
+  private static void add(
+      JavaInput javaInput, JCTree declaration, int column, Map<Input.Tok, Integer> columns) {
+    int start = getStartPosition(declaration);
+    Input.Token token = javaInput.getPositionToken(start);
+    if (token == null || token.getTok().getPosition() != start) {
+      return;
+    }
+    for (Input.Tok tok : token.getToksBefore()) {
+      if (tok.isJavadocComment()) {
+        columns.putIfAbsent(tok, column);
+      }
+    }
+  }
+
+  private JavadocColumns() {}
+}
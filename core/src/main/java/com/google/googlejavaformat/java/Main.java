@@ -14,10 +14,17 @@
 
 package com.google.googlejavaformat.java;
 
-import static java.lang.Math.min;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.util.Comparator.comparing;
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Comparator.naturalOrder;
+import static java.util.concurrent.CompletableFuture.allOf;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.googlejavaformat.java.JavaFormatterOptions.Style;
@@ -27,22 +34,47 @@ import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.jspecify.annotations.Nullable;
 
 /** The main class for the Java formatter CLI. */
 public final class Main {
-  private static final int MAX_THREADS = 20;
+  private static final int DEFAULT_IO_THREADS = 20;
+
+  /** The size in characters above which {@code --split-large-files} splits a file. */
+  private static final int LARGE_FILE_SIZE = 200_000;
+
   private static final String STDIN_FILENAME = "<stdin>";
 
   static String versionString() {
@@ -52,11 +84,36 @@ public final class Main {
   private final PrintWriter outWriter;
   private final PrintWriter errWriter;
   private final InputStream inStream;
+  private final Path workingDirectory;
+  private final JavadocCache javadocCache;
 
   public Main(PrintWriter outWriter, PrintWriter errWriter, InputStream inStream) {
+    this(outWriter, errWriter, inStream, Paths.get(""));
+  }
+
+  /**
+   * Creates a formatter that resolves relative file names against the given working directory,
+   * instead of the working directory of the current process.
+   */
+  Main(PrintWriter outWriter, PrintWriter errWriter, InputStream inStream, Path workingDirectory) {
+    this(outWriter, errWriter, inStream, workingDirectory, JavadocCache.create());
+  }
+
+  /**
+   * Creates a formatter that resolves relative file names against the given working directory, and
+   * shares formatted javadoc comments with other formatters through the given cache.
+   */
+  Main(
+      PrintWriter outWriter,
+      PrintWriter errWriter,
+      InputStream inStream,
+      Path workingDirectory,
+      JavadocCache javadocCache) {
     this.outWriter = outWriter;
     this.errWriter = errWriter;
     this.inStream = inStream;
+    this.workingDirectory = workingDirectory;
+    this.javadocCache = javadocCache;
   }
 
   /**
@@ -116,98 +173,475 @@ public final class Main {
       throw new UsageException();
     }
 
-    JavaFormatterOptions options =
+    JavaFormatterOptions.Builder options =
         JavaFormatterOptions.builder()
             .style(parameters.aosp() ? Style.AOSP : Style.GOOGLE)
             .formatJavadoc(parameters.formatJavadoc())
             .reorderModifiers(parameters.reorderModifiers())
-            .build();
+            .javadocCache(javadocCache);
 
     if (parameters.stdin()) {
-      return formatStdin(parameters, options);
+      // Editors format the file being saved through stdin, one file at a time, so the javadoc
+      // comments of a large file are formatted in parallel. Files are already formatted in
+      // parallel with each other, so their javadoc comments are formatted during the layout.
+      return formatStdin(parameters, options.javadocExecutor(ForkJoinPool.commonPool()).build());
     } else {
-      return formatFiles(parameters, options);
+      return formatFiles(parameters, options.build());
     }
   }
 
   private int formatFiles(CommandLineOptions parameters, JavaFormatterOptions options) {
-    int numThreads = min(MAX_THREADS, parameters.files().size());
-    ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+    // Formatting is CPU-bound, so by default it gets one thread per processor. File I/O runs on
+    // virtual threads instead, so that slow reads and writes (e.g. on network filesystems) don't
+    // hold up formatting threads. Threads are only started as work is submitted, so this doesn't
+    // create more threads than there are files to format. Files are submitted as soon as they are
+    // found, so formatting starts before the walk finishes, and the formatting tasks that are
+    // queued at any time (at most the pipeline's window) run largest first.
+    int threads = parameters.threads().orElse(Runtime.getRuntime().availableProcessors());
+    int ioThreads = parameters.ioThreads().orElse(DEFAULT_IO_THREADS);
+    ExecutorService formatExecutor =
+        new ThreadPoolExecutor(
+            threads, threads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>());
+    ExecutorService ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    FormatCache cache = openCache(parameters, options);
+    Pipeline pipeline =
+        new Pipeline(
+            formatExecutor,
+            ioExecutor,
+            new Semaphore(ioThreads),
+            cache,
+            parameters,
+            options,
+            /* maxPending= */ threads + ioThreads);
+
+    ImmutableList<PathMatcher> includes = pathMatchers(parameters.includes());
+    ImmutableList<PathMatcher> excludes = pathMatchers(parameters.excludes());
+    ImmutableList<PathMatcher> excludedDirectories = directoryMatchers(parameters.excludes());
+    // Results are written in the order that files are added to the pipeline, so the inputs (and
+    // the contents of each directory) are sorted to make the output deterministic. The pipeline
+    // drops files that were already added under another name.
+    for (Path path : parameters.files().stream().map(Paths::get).sorted().distinct().toList()) {
+      if (Files.isDirectory(workingDirectory.resolve(path))) {
+        if (parameters.isSelection()) {
+          errWriter.println(path + ": partial formatting is not supported for directories");
+          pipeline.allOk = false;
+          continue;
+        }
+        try {
+          addDirectory(pipeline, path, path, includes, excludes, excludedDirectories);
+        } catch (IOException | DirectoryIteratorException e) {
+          errWriter.println(path + ": could not read directory: " + e.getMessage());
+          pipeline.allOk = false;
+        }
+        continue;
+      }
+      if (!path.toString().endsWith(".java")) {
+        errWriter.println("Skipping non-Java file: " + path);
+        continue;
+      }
+      pipeline.add(path);
+    }
+    boolean allOk = pipeline.finish();
+    if (pipeline.stats != null) {
+      pipeline.stats.print(errWriter);
+    }
+
+    if (cache != null) {
+      try {
+        cache.evict();
+      } catch (IOException e) {
+        errWriter.println(parameters.cacheDir().get() + ": could not evict: " + e.getMessage());
+      }
+    }
+    if (!MoreExecutors.shutdownAndAwaitTermination(formatExecutor, Duration.ofSeconds(5))
+        || !MoreExecutors.shutdownAndAwaitTermination(ioExecutor, Duration.ofSeconds(5))) {
+      errWriter.println("Failed to shut down ExecutorService");
+      allOk = false;
+    }
+    return allOk ? 0 : 1;
+  }
 
-    ExecutorCompletionService<FormatFileCallable.Result> cs =
-        new ExecutorCompletionService<>(executorService);
+  private @Nullable FormatCache openCache(
+      CommandLineOptions parameters, JavaFormatterOptions options) {
+    if (parameters.cacheDir().isEmpty() || parameters.isSelection()) {
+      return null;
+    }
+    try {
+      return FormatCache.create(
+          workingDirectory.resolve(parameters.cacheDir().get()),
+          FormatCache.DEFAULT_MAX_ENTRIES,
+          parameters,
+          options);
+    } catch (IOException e) {
+      errWriter.println(parameters.cacheDir().get() + ": could not open cache: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Adds the Java files in the given directory and its subdirectories to the pipeline, in sorted
+   * order. Files are added as soon as they are found, so formatting overlaps with the walk.
+   * Excluded subdirectories aren't listed at all.
+   */
+  private void addDirectory(
+      Pipeline pipeline,
+      Path root,
+      Path directory,
+      List<PathMatcher> includes,
+      List<PathMatcher> excludes,
+      List<PathMatcher> excludedDirectories)
+      throws IOException {
+    List<Path> entries = new ArrayList<>();
+    try (DirectoryStream<Path> stream =
+        Files.newDirectoryStream(workingDirectory.resolve(directory))) {
+      stream.forEach(entry -> entries.add(directory.resolve(entry.getFileName())));
+    }
+    entries.sort(naturalOrder());
+    for (Path entry : entries) {
+      BasicFileAttributes attributes =
+          Files.readAttributes(
+              workingDirectory.resolve(entry), BasicFileAttributes.class, NOFOLLOW_LINKS);
+      if (attributes.isDirectory()) {
+        Path relativePath = root.relativize(entry);
+        if (excludedDirectories.stream().noneMatch(m -> m.matches(relativePath))) {
+          addDirectory(pipeline, root, entry, includes, excludes, excludedDirectories);
+        }
+      } else if (attributes.isRegularFile()
+          && entry.getFileName().toString().endsWith(".java")
+          && matches(includes, excludes, root.relativize(entry))) {
+        pipeline.add(entry);
+      }
+    }
+  }
+
+  /**
+   * Reads, formats, and (for in-place formatting) writes files concurrently, and reports the
+   * results on the calling thread in the order the files were added.
+   *
+   * <p>At most {@code maxPending} files are in flight at any time, so memory use is proportional to
+   * the number of threads rather than to the number of files.
+   */
+  private final class Pipeline {
+    private final ExecutorService formatExecutor;
+    private final ExecutorService ioExecutor;
+    private final Semaphore ioPermits;
+    private final @Nullable FormatCache cache;
+    private final CommandLineOptions parameters;
+    private final JavaFormatterOptions options;
+    private final int maxPending;
+    private final ArrayDeque<PendingFile> pending = new ArrayDeque<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Set<Path> added = new HashSet<>();
+
+    final @Nullable StatsReport stats;
     boolean allOk = true;
 
-    int files = 0;
-    for (String fileName : parameters.files()) {
-      if (!fileName.endsWith(".java")) {
-        errWriter.println("Skipping non-Java file: " + fileName);
-        continue;
+    Pipeline(
+        ExecutorService formatExecutor,
+        ExecutorService ioExecutor,
+        Semaphore ioPermits,
+        @Nullable FormatCache cache,
+        CommandLineOptions parameters,
+        JavaFormatterOptions options,
+        int maxPending) {
+      this.formatExecutor = formatExecutor;
+      this.ioExecutor = ioExecutor;
+      this.ioPermits = ioPermits;
+      this.cache = cache;
+      this.parameters = parameters;
+      this.options = options;
+      this.maxPending = maxPending;
+      this.stats = parameters.stats() ? new StatsReport(javadocCache) : null;
+    }
+
+    /**
+     * Submits a file for formatting, first waiting for earlier files if too many are pending. A
+     * file that was already added, maybe under another name (e.g. {@code A.java} and {@code
+     * ./A.java}, or a file and a directory that contains it), is skipped, since the same file
+     * mustn't be written concurrently.
+     */
+    void add(Path path) {
+      if (!added.add(realPath(path))) {
+        return;
+      }
+      while (pending.size() >= maxPending) {
+        report(pending.remove());
+      }
+      CompletableFuture<Input> input = supplyAsync(() -> read(path), ioExecutor);
+      CompletableFuture<FormatFileCallable.Result> result = input.thenCompose(i -> format(path, i));
+      if (parameters.inPlace() || cache != null) {
+        result = result.thenCombineAsync(input, this::write, ioExecutor);
       }
-      Path path = Paths.get(fileName);
+      pending.add(new PendingFile(path, result));
+      // Don't hold on to results that are already done until the queue fills up.
+      while (!pending.isEmpty() && pending.element().result().isDone()) {
+        report(pending.remove());
+      }
+    }
+
+    /** Returns the real path of a file, or its normalized absolute path if it can't be found. */
+    private Path realPath(Path path) {
+      Path absolute = workingDirectory.resolve(path).toAbsolutePath();
       try {
-        String input = new String(Files.readAllBytes(path), UTF_8);
-        cs.submit(new FormatFileCallable(parameters, path, input, options));
-        files++;
+        return absolute.toRealPath();
       } catch (IOException e) {
-        errWriter.println(fileName + ": could not read file: " + e.getMessage());
-        allOk = false;
+        // The error is reported when the file is read.
+        return absolute.normalize();
+      }
+    }
+
+    /** Reports all remaining files, and returns false if any of them failed. */
+    boolean finish() {
+      while (!pending.isEmpty()) {
+        report(pending.remove());
+      }
+      return allOk;
+    }
+
+    private CompletableFuture<FormatFileCallable.Result> format(Path path, Input input) {
+      String text = input.text;
+      if (input.formatted) {
+        return completedFuture(
+            FormatFileCallable.Result.create(path, text, text, /* exception= */ null));
+      }
+      FormatFileCallable callable = new FormatFileCallable(parameters, path, text, options);
+      if (!parameters.splitLargeFiles()
+          || parameters.fixImportsOnly()
+          || parameters.isSelection()
+          || text.length() < LARGE_FILE_SIZE) {
+        return schedule(text.length(), callable::call);
+      }
+      // Format the file's top-level types in parallel.
+      return schedule(text.length(), callable::splitTopLevelTypes)
+          .thenCompose(
+              chunks -> {
+                if (chunks.size() == 1) {
+                  return schedule(text.length(), callable::call);
+                }
+                List<CompletableFuture<@Nullable String>> formatted = new ArrayList<>();
+                for (String chunk : chunks) {
+                  formatted.add(schedule(chunk.length(), () -> callable.formatChunk(chunk)));
+                }
+                return allOf(formatted.toArray(new CompletableFuture<?>[0]))
+                    .thenCompose(
+                        unused ->
+                            schedule(
+                                text.length(),
+                                () ->
+                                    callable.join(
+                                        formatted.stream().map(CompletableFuture::join).toList())));
+              });
+    }
+
+    /** Runs a task on the formatting thread pool, with a priority given by its estimated cost. */
+    private <T> CompletableFuture<T> schedule(long cost, Supplier<T> task) {
+      CompletableFuture<T> future = new CompletableFuture<>();
+      formatExecutor.execute(
+          new PrioritizedTask(
+              cost,
+              sequence.getAndIncrement(),
+              () -> {
+                try {
+                  future.complete(task.get());
+                } catch (RuntimeException | Error e) {
+                  future.completeExceptionally(e);
+                }
+              }));
+      return future;
+    }
+
+    private Input read(Path path) {
+      ioPermits.acquireUninterruptibly();
+      try {
+        byte[] bytes = Files.readAllBytes(workingDirectory.resolve(path));
+        return new Input(
+            bytes, new String(bytes, UTF_8), cache != null && cache.isFormatted(bytes));
+      } catch (IOException e) {
+        throw new UncheckedIOException("could not read file: " + e.getMessage(), e);
+      } finally {
+        ioPermits.release();
+      }
+    }
+
+    /** Writes the formatted file if necessary, and records it in the cache. */
+    private FormatFileCallable.Result write(FormatFileCallable.Result result, Input input) {
+      if (result.exception() != null) {
+        return result;
+      }
+      boolean changed = result.changed();
+      if (changed && !parameters.inPlace()) {
+        return result;
+      }
+      // The output is only encoded if it changed, and then only once for both the file and the
+      // cache.
+      byte[] formatted = changed ? result.output().getBytes(UTF_8) : input.bytes;
+      ioPermits.acquireUninterruptibly();
+      try {
+        if (parameters.inPlace() && changed) {
+          replace(workingDirectory.resolve(result.path()), formatted);
+        }
+        if (cache != null && (!changed || parameters.inPlace())) {
+          markFormatted(cache, formatted);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("could not write file: " + e.getMessage(), e);
+      } finally {
+        ioPermits.release();
       }
+      return result;
     }
 
-    List<FormatFileCallable.Result> results = new ArrayList<>();
-    while (files > 0) {
+    private void report(PendingFile file) {
+      Path path = file.path();
+      FormatFileCallable.Result result;
       try {
-        files--;
-        results.add(cs.take().get());
+        result = file.result().get();
       } catch (InterruptedException e) {
         errWriter.println(e.getMessage());
         allOk = false;
-        continue;
+        return;
       } catch (ExecutionException e) {
-        errWriter.println("error: " + e.getCause().getMessage());
-        e.getCause().printStackTrace(errWriter);
+        if (e.getCause() instanceof UncheckedIOException) {
+          errWriter.println(path + ": " + e.getCause().getMessage());
+        } else {
+          errWriter.println("error: " + e.getCause().getMessage());
+          e.getCause().printStackTrace(errWriter);
+        }
         allOk = false;
-        continue;
+        return;
+      }
+      if (stats != null && result.stats() != null) {
+        stats.add(path.toString(), result.stats());
       }
-    }
-    Collections.sort(results, comparing(FormatFileCallable.Result::path));
-    for (FormatFileCallable.Result result : results) {
-      Path path = result.path();
       if (result.exception() != null) {
         errWriter.print(result.exception().formatDiagnostics(path.toString(), result.input()));
         allOk = false;
-        continue;
+        return;
       }
-      String formatted = result.output();
       boolean changed = result.changed();
       if (changed && parameters.setExitIfChanged()) {
         allOk = false;
       }
-      if (parameters.inPlace()) {
-        if (!changed) {
-          continue; // preserve original file
-        }
-        try {
-          Files.write(path, formatted.getBytes(UTF_8));
-        } catch (IOException e) {
-          errWriter.println(path + ": could not write file: " + e.getMessage());
-          allOk = false;
-          continue;
-        }
-      } else if (parameters.dryRun()) {
+      if (parameters.dryRun()) {
         if (changed) {
           outWriter.println(path);
         }
-      } else {
-        outWriter.write(formatted);
+      } else if (!parameters.inPlace()) {
+        outWriter.write(result.output());
       }
     }
-    if (!MoreExecutors.shutdownAndAwaitTermination(executorService, Duration.ofSeconds(5))) {
-      errWriter.println("Failed to shut down ExecutorService");
-      allOk = false;
+  }
+
+  /**
+   * A task for the formatting thread pool. Tasks with a higher estimated cost run first, and tasks
+   * with the same cost run in the order they were submitted.
+   */
+  private record PrioritizedTask(long cost, long sequence, Runnable task)
+      implements Runnable, Comparable<PrioritizedTask> {
+    private static final Comparator<PrioritizedTask> ORDER =
+        Comparator.comparingLong(PrioritizedTask::cost)
+            .reversed()
+            .thenComparingLong(PrioritizedTask::sequence);
+
+    @Override
+    public void run() {
+      task.run();
+    }
+
+    @Override
+    public int compareTo(PrioritizedTask other) {
+      return ORDER.compare(this, other);
+    }
+  }
+
+  /** The contents of a file, and whether the cache says they are already formatted. */
+  private static final class Input {
+    final byte[] bytes;
+    final String text;
+    final boolean formatted;
+
+    Input(byte[] bytes, String text, boolean formatted) {
+      this.bytes = bytes;
+      this.text = text;
+      this.formatted = formatted;
+    }
+  }
+
+  private record PendingFile(Path path, Future<FormatFileCallable.Result> result) {}
+
+  private static ImmutableList<PathMatcher> pathMatchers(List<String> globs) {
+    return globs.stream()
+        .map(glob -> FileSystems.getDefault().getPathMatcher("glob:" + glob))
+        .collect(toImmutableList());
+  }
+
+  /**
+   * Returns matchers for the directories whose contents are all excluded by the given globs: the
+   * directories that a glob matches, and for a glob like {@code generated/**}, the directories that
+   * {@code generated} matches.
+   */
+  private static ImmutableList<PathMatcher> directoryMatchers(List<String> excludes) {
+    List<String> globs = new ArrayList<>();
+    for (String glob : excludes) {
+      globs.add(glob);
+      if (glob.endsWith("/**")) {
+        globs.add(glob.substring(0, glob.length() - "/**".length()));
+      }
+    }
+    return pathMatchers(globs);
+  }
+
+  /**
+   * Returns true if a file found in a directory should be formatted, given its path relative to
+   * that directory.
+   */
+  private static boolean matches(
+      List<PathMatcher> includes, List<PathMatcher> excludes, Path relativePath) {
+    if (!includes.isEmpty() && includes.stream().noneMatch(m -> m.matches(relativePath))) {
+      return false;
+    }
+    return excludes.stream().noneMatch(m -> m.matches(relativePath));
+  }
+
+  private static void markFormatted(FormatCache cache, byte[] formatted) {
+    try {
+      cache.markFormatted(formatted);
+    } catch (IOException e) {
+      // the cache is only an optimization
+    }
+  }
+
+  /**
+   * Replaces the contents of a file. The new contents are written to a temporary file in the same
+   * directory, which is then renamed over the original, so that if formatting is interrupted the
+   * file is left either unchanged or fully formatted. If the file is a symbolic link, the file it
+   * points to is replaced.
+   */
+  private static void replace(Path path, byte[] contents) throws IOException {
+    Path target = path.toRealPath();
+    Path temp;
+    try {
+      temp = Files.createTempFile(target.getParent(), "." + target.getFileName(), ".tmp");
+    } catch (AccessDeniedException e) {
+      // The directory isn't writable, but the file may be.
+      Files.write(target, contents);
+      return;
+    }
+    try {
+      PosixFileAttributeView attributes =
+          Files.getFileAttributeView(target, PosixFileAttributeView.class);
+      if (attributes != null) {
+        Files.setPosixFilePermissions(temp, attributes.readAttributes().permissions());
+      }
+      Files.write(temp, contents);
+      try {
+        Files.move(temp, target, ATOMIC_MOVE, REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.write(target, contents);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
     }
-    return allOk ? 0 : 1;
   }
 
   private int formatStdin(CommandLineOptions parameters, JavaFormatterOptions options) {
@@ -219,8 +653,13 @@ public final class Main {
     }
     String stdinFilename = parameters.assumeFilename().orElse(STDIN_FILENAME);
     boolean ok = true;
+    StatsReport stats = new StatsReport(javadocCache);
     FormatFileCallable.Result result =
         new FormatFileCallable(parameters, null, input, options).call();
+    if (result.stats() != null) {
+      stats.add(stdinFilename, result.stats());
+      stats.print(errWriter);
+    }
     if (result.exception() != null) {
       errWriter.print(result.exception().formatDiagnostics(stdinFilename, input));
       ok = false;
@@ -279,6 +718,9 @@ public final class Main {
     if (parameters.dryRun() && parameters.inPlace()) {
       throw new UsageException("cannot use --dry-run and --in-place at the same time");
     }
+    if (parameters.threads().orElse(1) < 1 || parameters.ioThreads().orElse(1) < 1) {
+      throw new UsageException("--threads and --io-threads must be positive");
+    }
     return parameters;
   }
 }
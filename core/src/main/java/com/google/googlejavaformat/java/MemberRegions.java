@@ -0,0 +1,640 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import static com.google.common.collect.Iterables.getLast;
+import static com.google.googlejavaformat.java.Trees.getEndPosition;
+import static com.google.googlejavaformat.java.Trees.getStartPosition;
+import static java.util.Comparator.comparingInt;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
+import com.google.googlejavaformat.Input;
+import com.google.googlejavaformat.Newlines;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
+import com.sun.tools.javac.tree.TreeInfo;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The members of a file's top-level classes, split into regions that can be formatted without
+ * formatting the rest of the file.
+ *
+ * <p>The formatter lays out each member of a class body on its own, except for the blank line
+ * before it, which depends on whether it and the member before it are fields. So formatting a range
+ * within some members gives the same replacements as formatting it within a much smaller
+ * compilation unit, a <em>skeleton</em>: the class's header, a stand-in for the member before them,
+ * the members themselves, a stand-in for the member after them, and the closing brace. The time to
+ * format a skeleton depends on the size of the members in it, not on the size of the file.
+ *
+ * <p>Regions are separated by line breaks, and each holds one or more whole members, with the
+ * comments before them. Enums, records and implicit classes aren't split into regions, and neither
+ * are members that share a line with the next member, or with a stray semicolon.
+ */
+final class MemberRegions {
+
+  // Replace with Flags.IMPLICIT_CLASS once JDK 25 is the minimum supported version
+  private static final int IMPLICIT_CLASS = 1 << 19;
+
+  /** See {@link JavaInputAstVisitor}'s {@code javadocPosition}. */
+  private static final boolean MARKDOWN_JAVADOC = Runtime.version().feature() >= 23;
+
+  /** A stand-in for a member that gets a blank line before it. */
+  private static final String METHOD_STUB = "void __();";
+
+  /** A stand-in for a member that doesn't get a blank line before it. */
+  private static final String FIELD_STUB = "int __ = 0;";
+
+  /**
+   * The whitespace between two regions, or between a region and the braces of its class body. The
+   * whitespace includes at least one line break.
+   *
+   * @param lineEnd the end of the line before the whitespace, after any trailing comment
+   * @param next the start of the text after the whitespace
+   */
+  private record Gap(int lineEnd, int next) {
+    Gap shift(int delta) {
+      return new Gap(lineEnd + delta, next + delta);
+    }
+  }
+
+  /**
+   * Whether the first and last members of a region get a blank line before them, if they don't come
+   * first in their class body.
+   */
+  private record Region(boolean firstGetsBlankLine, boolean lastGetsBlankLine) {}
+
+  /** The regions of a top-level class. */
+  private static final class TypeBody {
+    int start;
+    int end;
+
+    /** The gaps after the body's open brace, between the regions, and before the closing brace. */
+    final List<Gap> gaps;
+
+    final List<Region> regions;
+
+    TypeBody(int start, int end, List<Gap> gaps, List<Region> regions) {
+      this.start = start;
+      this.end = end;
+      this.gaps = gaps;
+      this.regions = regions;
+    }
+
+    /** Returns the regions of the given top-level type, or {@code null} if it can't be split. */
+    static @Nullable TypeBody of(JavaInput input, JCTree tree) {
+      if (!(tree instanceof JCClassDecl cls)
+          || (TreeInfo.flags(cls) & IMPLICIT_CLASS) == IMPLICIT_CLASS) {
+        return null;
+      }
+      switch (cls.getKind()) {
+        case CLASS, INTERFACE, ANNOTATION_TYPE -> {}
+        default -> {
+          return null;
+        }
+      }
+      List<JCTree> members = cls.getMembers();
+      if (members.isEmpty()) {
+        return null;
+      }
+      String text = input.getText();
+      List<? extends Input.Token> tokens = input.getTokens();
+      int openBrace = tokenStartingAt(tokens, getStartPosition(members.get(0))) - 1;
+      if (openBrace < 0 || !tokens.get(openBrace).getTok().getText().equals("{")) {
+        return null;
+      }
+      List<Gap> gaps = new ArrayList<>();
+      List<Region> regions = new ArrayList<>();
+      Gap gap = gapAfter(text, tokens.get(openBrace));
+      if (gap == null) {
+        return null;
+      }
+      int previous = openBrace;
+      boolean previousGetsBlankLine = true;
+      boolean previousIrregular = false;
+      // Like JavaInputAstVisitor.addBodyDeclarations, which lays out fields declared together as
+      // one member.
+      for (int i = 0; i < members.size(); ) {
+        JCTree member = members.get(i++);
+        int start = getStartPosition(member);
+        int end = getEndPosition(member, input.getCompilationUnit());
+        boolean field = member instanceof JCVariableDecl;
+        while (field
+            && i < members.size()
+            && members.get(i) instanceof JCVariableDecl
+            && getStartPosition(members.get(i)) == start) {
+          end = Math.max(end, getEndPosition(members.get(i++), input.getCompilationUnit()));
+        }
+        int first = tokenStartingAt(tokens, start);
+        int last = tokenEndingAt(tokens, end);
+        if (first < 0 || last < first) {
+          return null;
+        }
+        boolean getsBlankLine = !field || hasJavadoc(tokens.get(first));
+        // A field whose annotations are laid out one per line also gets blank lines around it, and
+        // the blank lines within a field carry over to the next one, so a stand-in can't tell
+        // whether there's a blank line between two such fields.
+        boolean irregular =
+            field
+                && (!((JCVariableDecl) member).getModifiers().getAnnotations().isEmpty()
+                    || hasBlankLine(tokens, first, last));
+        boolean separable =
+            getsBlankLine || previousGetsBlankLine || !(irregular || previousIrregular);
+        if (gap != null && first == previous + 1 && separable) {
+          gaps.add(gap);
+          regions.add(new Region(getsBlankLine, getsBlankLine));
+        } else if (regions.isEmpty()) {
+          return null;
+        } else {
+          Region region = getLast(regions);
+          regions.set(regions.size() - 1, new Region(region.firstGetsBlankLine(), getsBlankLine));
+        }
+        gap = gapAfter(text, tokens.get(last));
+        previous = last;
+        previousGetsBlankLine = getsBlankLine;
+        previousIrregular = irregular;
+      }
+      if (gap != null) {
+        gaps.add(gap);
+      } else {
+        // The last region runs into the closing brace, so leave it in the text after the regions.
+        regions.remove(regions.size() - 1);
+        if (regions.isEmpty()) {
+          return null;
+        }
+      }
+      return new TypeBody(
+          getStartPosition(cls), getEndPosition(cls, input.getCompilationUnit()), gaps, regions);
+    }
+
+    /** Returns the gap after a token, if the line it ends holds nothing else but comments. */
+    private static @Nullable Gap gapAfter(String text, Input.Token token) {
+      List<? extends Input.Tok> toksAfter = token.getToksAfter();
+      if (toksAfter.isEmpty() || !getLast(toksAfter).isNewline()) {
+        return null;
+      }
+      Input.Tok newline = getLast(toksAfter);
+      int lineEnd = newline.getPosition();
+      while (lineEnd > 0 && CharMatcher.whitespace().matches(text.charAt(lineEnd - 1))) {
+        lineEnd--;
+      }
+      int next =
+          CharMatcher.whitespace().negate().indexIn(text, newline.getPosition() + newline.length());
+      return new Gap(lineEnd, next == -1 ? text.length() : next);
+    }
+
+    /** Returns whether there's a line between two tokens that holds no other tokens. */
+    private static boolean hasBlankLine(List<? extends Input.Token> tokens, int first, int last) {
+      for (int i = first; i < last; i++) {
+        int newlines = 0;
+        for (Input.Tok tok :
+            Iterables.concat(tokens.get(i).getToksAfter(), tokens.get(i + 1).getToksBefore())) {
+          if (tok.isNewline() && ++newlines > 1) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    /** Like {@link JavaInputAstVisitor}'s {@code hasJavaDoc}. */
+    private static boolean hasJavadoc(Input.Token token) {
+      for (Input.Tok tok : token.getToksBefore()) {
+        String text = tok.getText();
+        if (text.startsWith("/**") || (MARKDOWN_JAVADOC && text.startsWith("///"))) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /** Returns the index of the token that starts at a position, or -1 if there is none. */
+    private static int tokenStartingAt(List<? extends Input.Token> tokens, int position) {
+      int i = floorToken(tokens, position);
+      return i >= 0 && tokens.get(i).getTok().getPosition() == position ? i : -1;
+    }
+
+    /** Returns the index of the token that ends at a position, or -1 if there is none. */
+    private static int tokenEndingAt(List<? extends Input.Token> tokens, int position) {
+      int i = floorToken(tokens, position - 1);
+      if (i < 0) {
+        return -1;
+      }
+      Input.Tok tok = tokens.get(i).getTok();
+      return tok.getPosition() + tok.length() == position ? i : -1;
+    }
+
+    /** Returns the index of the last token that starts at or before a position, or -1. */
+    private static int floorToken(List<? extends Input.Token> tokens, int position) {
+      int lo = 0;
+      int hi = tokens.size() - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        if (tokens.get(mid).getTok().getPosition() <= position) {
+          lo = mid + 1;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      return hi;
+    }
+
+    /** Returns the start of the line that the text after a gap starts on. */
+    int lineStartBefore(String text, int gap) {
+      int next = gaps.get(gap).next();
+      while (next > 0 && text.charAt(next - 1) != '\n' && text.charAt(next - 1) != '\r') {
+        next--;
+      }
+      return next;
+    }
+
+    void shift(int delta) {
+      start += delta;
+      end += delta;
+      gaps.replaceAll(gap -> gap.shift(delta));
+    }
+  }
+
+  /**
+   * Some of a class's regions, from {@code first} to {@code last} inclusive, and the ranges within
+   * them to format.
+   */
+  private static final class Span {
+    final TypeBody type;
+    final int first;
+    int last;
+    final List<Range<Integer>> ranges = new ArrayList<>();
+
+    /** The end of the text copied into the skeleton, before formatting. */
+    int end;
+
+    /** The change in length of the text from formatting. */
+    int delta;
+
+    Span(TypeBody type, int first, int last) {
+      this.type = type;
+      this.first = first;
+      this.last = last;
+    }
+  }
+
+  /** A skeleton, and the part of it that was copied from the file. */
+  private record Skeleton(String text, int start, int end, int offset) {}
+
+  /** The result of {@link #format}. */
+  static final class Formatted {
+    private final ImmutableList<Replacement> replacements;
+    private final List<Span> spans;
+
+    private Formatted(ImmutableList<Replacement> replacements, List<Span> spans) {
+      this.replacements = replacements;
+      this.spans = spans;
+    }
+
+    /**
+     * The replacements, sorted from low index to high index, without overlaps; the same as {@link
+     * Formatter#getFormatReplacements} returns for the whole file.
+     */
+    ImmutableList<Replacement> replacements() {
+      return replacements;
+    }
+  }
+
+  /**
+   * The file's imports, which are copied into skeletons since they decide which annotations are
+   * type annotations.
+   */
+  private final String imports;
+
+  private final List<TypeBody> types;
+
+  private MemberRegions(String imports, List<TypeBody> types) {
+    this.imports = imports;
+    this.types = types;
+  }
+
+  /** Returns the regions of an input, which must already have been parsed. */
+  static MemberRegions of(JavaInput input) {
+    JCCompilationUnit unit = input.getCompilationUnit();
+    String imports =
+        unit.getImports().isEmpty()
+            ? ""
+            : input
+                .getText()
+                .substring(
+                    getStartPosition(unit.getImports().get(0)),
+                    getEndPosition(getLast(unit.getImports()), unit));
+    List<TypeBody> types = new ArrayList<>();
+    for (JCTree tree : unit.getTypeDecls()) {
+      TypeBody type = TypeBody.of(input, tree);
+      if (type != null) {
+        types.add(type);
+      }
+    }
+    return new MemberRegions(imports, types);
+  }
+
+  /**
+   * Formats character ranges of the text that these regions were found in, by formatting skeletons
+   * of the regions that hold them.
+   *
+   * @return the replacements, or {@code null} if some of the ranges aren't within regions, the
+   *     regions hold most of the file, or the skeletons can't be formatted; then the whole file
+   *     needs to be formatted instead
+   */
+  @Nullable Formatted format(
+      Formatter formatter, String text, Collection<Range<Integer>> characterRanges) {
+    List<Span> spans = new ArrayList<>();
+    for (Range<Integer> characterRange : characterRanges) {
+      Range<Integer> range = characterRange.canonical(DiscreteDomain.integers());
+      int lo = range.lowerEndpoint();
+      // An empty range stands for the line under the cursor, as in JavaInput.
+      int hi = range.isEmpty() ? lo + 1 : range.upperEndpoint();
+      if (hi > text.length()) {
+        return null;
+      }
+      Span span = span(lo, hi);
+      if (span == null) {
+        return null;
+      }
+      if (span.first <= span.last) {
+        span.ranges.add(Range.closedOpen(lo, hi));
+        spans.add(span);
+      }
+    }
+    spans = mergeSpans(spans);
+    int length = 0;
+    for (Span span : spans) {
+      span.end = span.type.lineStartBefore(text, span.last + 1);
+      length += span.end - span.type.gaps.get(span.first).lineEnd();
+    }
+    if (length > text.length() / 2) {
+      // It's faster to format most of a file in one go than in skeletons.
+      return null;
+    }
+    String separator = Newlines.guessLineSeparator(text);
+    ImmutableList.Builder<Replacement> replacements = ImmutableList.builder();
+    for (Span span : spans) {
+      Skeleton skeleton = skeleton(text, span, separator);
+      if (!separator.equals(Newlines.guessLineSeparator(skeleton.text()))) {
+        return null;
+      }
+      List<Range<Integer>> ranges = new ArrayList<>();
+      for (Range<Integer> range : span.ranges) {
+        // Text after the span's end is the indentation of the next region, which is formatted with
+        // the span anyway.
+        ranges.add(
+            Range.closedOpen(
+                range.lowerEndpoint() - skeleton.offset(),
+                Math.min(range.upperEndpoint(), span.end) - skeleton.offset()));
+      }
+      try {
+        for (Replacement replacement :
+            formatter.getFormatReplacementsFromWholeUnit(new JavaInput(skeleton.text()), ranges)) {
+          Range<Integer> range = replacement.replaceRange();
+          if (range.lowerEndpoint() < skeleton.start() || range.upperEndpoint() > skeleton.end()) {
+            return null;
+          }
+          replacements.add(
+              Replacement.create(
+                  range.lowerEndpoint() + skeleton.offset(),
+                  range.upperEndpoint() + skeleton.offset(),
+                  replacement.replacementString()));
+          span.delta +=
+              replacement.replacementString().length()
+                  - (range.upperEndpoint() - range.lowerEndpoint());
+        }
+      } catch (FormatterException e) {
+        // Report the errors from formatting the whole file, with the right positions.
+        return null;
+      }
+    }
+    return new Formatted(replacements.build(), spans);
+  }
+
+  /**
+   * Returns the regions whose tokens a range includes, like {@link JavaInput}'s {@code
+   * characterRangeToTokenRange}: whitespace belongs to the following token at the start of a range,
+   * and to the preceding token at the end. Returns {@code null} if the range includes tokens that
+   * aren't in regions, and an empty span if it doesn't include any tokens.
+   */
+  private @Nullable Span span(int lo, int hi) {
+    for (TypeBody type : types) {
+      List<Gap> gaps = type.gaps;
+      if (lo < gaps.get(0).lineEnd() || hi > getLast(gaps).next()) {
+        continue;
+      }
+      if (lo >= getLast(gaps).lineEnd()) {
+        return null;
+      }
+      int first = 0;
+      while (gaps.get(first + 1).lineEnd() <= lo) {
+        first++;
+      }
+      int last = first - 1;
+      while (last + 1 < type.regions.size() && gaps.get(last + 1).next() < hi) {
+        last++;
+      }
+      return new Span(type, first, last);
+    }
+    return null;
+  }
+
+  /**
+   * Merges spans that overlap or are next to each other, since a skeleton's stand-ins are only
+   * right for regions that haven't been edited.
+   */
+  private static List<Span> mergeSpans(List<Span> spans) {
+    List<Span> merged = new ArrayList<>();
+    spans.sort(comparingInt((Span span) -> span.type.start).thenComparingInt(span -> span.first));
+    for (Span span : spans) {
+      Span previous = merged.isEmpty() ? null : getLast(merged);
+      if (previous != null && previous.type == span.type && span.first <= previous.last + 1) {
+        previous.last = Math.max(previous.last, span.last);
+        previous.ranges.addAll(span.ranges);
+      } else {
+        merged.add(span);
+      }
+    }
+    return merged;
+  }
+
+  /** Returns the skeleton for a span; {@link Span#end} must be set. */
+  private Skeleton skeleton(String text, Span span, String separator) {
+    TypeBody type = span.type;
+    StringBuilder sb = new StringBuilder();
+    if (!imports.isEmpty()) {
+      sb.append(imports).append(separator).append(separator);
+    }
+    int start;
+    if (span.first == 0) {
+      start = sb.length() + type.gaps.get(0).lineEnd() - type.start;
+      sb.append(text, type.start, span.end);
+    } else {
+      sb.append(text, type.start, type.gaps.get(0).lineEnd())
+          .append(separator)
+          .append(stub(type.regions.get(span.first - 1).lastGetsBlankLine()));
+      start = sb.length();
+      sb.append(text, type.gaps.get(span.first).lineEnd(), span.end);
+    }
+    int end = sb.length();
+    int offset = span.end - end;
+    if (span.last == type.regions.size() - 1) {
+      sb.append(text, span.end, type.end);
+    } else {
+      sb.append(stub(type.regions.get(span.last + 1).firstGetsBlankLine()))
+          .append(separator)
+          .append('}');
+    }
+    return new Skeleton(sb.toString(), start, end, offset);
+  }
+
+  private static String stub(boolean getsBlankLine) {
+    return getsBlankLine ? METHOD_STUB : FIELD_STUB;
+  }
+
+  /**
+   * Updates the regions for a change to the text they were found in.
+   *
+   * @param start the start of the changed text
+   * @param end the end of the changed text, before the change
+   * @param length the length of the new text
+   */
+  void edit(int start, int end, int length) {
+    int delta = length - (end - start);
+    for (Iterator<TypeBody> it = types.iterator(); it.hasNext(); ) {
+      TypeBody type = it.next();
+      if (end < type.start) {
+        type.shift(delta);
+        continue;
+      }
+      if (start > type.end) {
+        continue;
+      }
+      List<Gap> gaps = type.gaps;
+      if (start <= gaps.get(0).next() || end >= getLast(gaps).lineEnd()) {
+        // The edit may have changed the class's header, or how its body ends.
+        it.remove();
+        continue;
+      }
+      for (int i = gaps.size() - 1; i >= 0; i--) {
+        Gap gap = gaps.get(i);
+        if (gap.lineEnd() > end) {
+          gaps.set(i, gap.shift(delta));
+        } else if (gap.next() >= start) {
+          // The edit touches the gap, so it may not separate regions anymore.
+          merge(type, i);
+        }
+      }
+      type.end += delta;
+    }
+  }
+
+  /** Merges the regions before and after a gap between regions. */
+  private static void merge(TypeBody type, int gap) {
+    Region before = type.regions.get(gap - 1);
+    Region after = type.regions.remove(gap);
+    type.regions.set(gap - 1, new Region(before.firstGetsBlankLine(), after.lastGetsBlankLine()));
+    type.gaps.remove(gap);
+  }
+
+  /**
+   * Updates the regions for the replacements from {@link #format}, by finding the regions in
+   * skeletons of the formatted text.
+   *
+   * @param formatted the result of {@link #format} on the text these regions were found in
+   * @param text the formatted text
+   */
+  void update(Formatted formatted, String text) {
+    String separator = Newlines.guessLineSeparator(text);
+    int delta = 0;
+    Iterator<Span> spans = formatted.spans.iterator();
+    Span span = spans.hasNext() ? spans.next() : null;
+    for (Iterator<TypeBody> it = types.iterator(); it.hasNext(); ) {
+      TypeBody type = it.next();
+      type.shift(delta);
+      List<Span> typeSpans = new ArrayList<>();
+      while (span != null && span.type == type) {
+        // The gaps before the span have been shifted; the ones after it move with its end.
+        for (int i = span.last + 1; i < type.gaps.size(); i++) {
+          type.gaps.set(i, type.gaps.get(i).shift(span.delta));
+        }
+        type.end += span.delta;
+        span.end += delta + span.delta;
+        delta += span.delta;
+        typeSpans.add(span);
+        span = spans.hasNext() ? spans.next() : null;
+      }
+      // Update the last span first, so that the indices of the regions before it stay the same.
+      for (Span typeSpan : Lists.reverse(typeSpans)) {
+        if (!update(text, typeSpan, separator)) {
+          it.remove();
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Replaces the regions of a span with the ones in a skeleton of the formatted text, and returns
+   * false if they can't be found.
+   */
+  private boolean update(String text, Span span, String separator) {
+    TypeBody type = span.type;
+    Skeleton skeleton = skeleton(text, span, separator);
+    TypeBody found;
+    try {
+      JavaInput input = new JavaInput(skeleton.text());
+      Formatter.parse(input);
+      found = TypeBody.of(input, input.getCompilationUnit().getTypeDecls().get(0));
+    } catch (FormatterException e) {
+      return false;
+    }
+    int before = span.first > 0 ? 1 : 0;
+    int after = span.last < type.regions.size() - 1 ? 1 : 0;
+    if (found == null
+        || found.regions.size() <= before + after
+        || (before > 0 && found.gaps.get(1).lineEnd() != skeleton.start())
+        || (after > 0 && found.gaps.get(found.gaps.size() - 2).next() != skeleton.end())) {
+      return false;
+    }
+    List<Gap> gaps = new ArrayList<>();
+    for (int i = before; i < found.gaps.size() - after; i++) {
+      gaps.add(found.gaps.get(i).shift(skeleton.offset()));
+    }
+    if (before > 0) {
+      gaps.set(0, new Gap(type.gaps.get(span.first).lineEnd(), gaps.get(0).next()));
+    }
+    if (after > 0) {
+      gaps.set(
+          gaps.size() - 1, new Gap(getLast(gaps).lineEnd(), type.gaps.get(span.last + 1).next()));
+    }
+    type.gaps.subList(span.first, span.last + 2).clear();
+    type.gaps.addAll(span.first, gaps);
+    type.regions.subList(span.first, span.last + 1).clear();
+    type.regions.addAll(span.first, found.regions.subList(before, found.regions.size() - after));
+    return true;
+  }
+}
@@ -39,22 +39,17 @@ import com.sun.source.util.DocTreePath;
 import com.sun.source.util.DocTreePathScanner;
 import com.sun.source.util.TreePathScanner;
 import com.sun.source.util.TreeScanner;
-import com.sun.tools.javac.api.JavacTrees;
 import com.sun.tools.javac.tree.DCTree;
 import com.sun.tools.javac.tree.DCTree.DCReference;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
 import com.sun.tools.javac.tree.JCTree.JCFieldAccess;
 import com.sun.tools.javac.tree.JCTree.JCImport;
-import com.sun.tools.javac.util.Context;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import javax.tools.Diagnostic;
-import javax.tools.JavaFileObject;
 import org.jspecify.annotations.Nullable;
 
 /**
@@ -83,11 +78,9 @@ public class RemoveUnusedImports {
 
     private final Set<String> usedNames = new LinkedHashSet<>();
     private final Multimap<String, Range<Integer>> usedInJavadoc = HashMultimap.create();
-    final JavacTrees trees;
     final DocTreeScanner docTreeSymbolScanner;
 
-    private UnusedImportScanner(JavacTrees trees) {
-      this.trees = trees;
+    private UnusedImportScanner() {
       docTreeSymbolScanner = new DocTreeScanner();
     }
 
@@ -144,7 +137,14 @@ public class RemoveUnusedImports {
       if (getCurrentPath() == null) {
         return;
       }
-      DocCommentTree commentTree = trees.getDocCommentTree(getCurrentPath());
+      // Equivalent to JavacTrees#getDocCommentTree, but without requiring the javac Context that
+      // the compilation unit was parsed with.
+      JCCompilationUnit unit = (JCCompilationUnit) getCurrentPath().getCompilationUnit();
+      if (unit.docComments == null) {
+        return;
+      }
+      DocCommentTree commentTree =
+          unit.docComments.getCommentTree((JCTree) getCurrentPath().getLeaf());
       if (commentTree == null) {
         return;
       }
@@ -203,28 +203,47 @@ public class RemoveUnusedImports {
   }
 
   public static String removeUnusedImports(final String contents) throws FormatterException {
-    Context context = new Context();
-    JCCompilationUnit unit = parse(context, contents);
-    if (unit == null) {
-      // error handling is done during formatting
-      return contents;
-    }
-    UnusedImportScanner scanner = new UnusedImportScanner(JavacTrees.instance(context));
+    return removeUnusedImports(contents, Trees.parse(contents, /* allowStringFolding= */ false));
+  }
+
+  /**
+   * Removes unused imports from {@code contents}, given its already-parsed compilation unit.
+   *
+   * @param unit the result of parsing {@code contents}
+   */
+  static String removeUnusedImports(String contents, JCCompilationUnit unit) {
+    UnusedImportScanner scanner = new UnusedImportScanner();
     scanner.scan(unit, null);
     return applyReplacements(
         contents, buildReplacements(contents, unit, scanner.usedNames, scanner.usedInJavadoc));
   }
 
-  private static JCCompilationUnit parse(Context context, String javaInput)
-      throws FormatterException {
-    List<Diagnostic<? extends JavaFileObject>> errorDiagnostics = new ArrayList<>();
-    JCTree.JCCompilationUnit unit =
-        Trees.parse(context, errorDiagnostics, /* allowStringFolding= */ false, javaInput);
-    if (!errorDiagnostics.isEmpty()) {
-      // error handling is done during formatting
-      throw FormatterException.fromJavacDiagnostics(errorDiagnostics);
+  /**
+   * Returns true if {@link #removeUnusedImports} would remove any imports from the given
+   * compilation unit.
+   *
+   * <p>Formatting only changes whitespace and comments, so the answer computed from the input of
+   * the formatter also holds for its output. That lets callers skip re-parsing the formatted
+   * output when there is nothing to remove, which is the common case.
+   */
+  static boolean hasUnusedImports(JCCompilationUnit unit) {
+    if (unit.getImports().isEmpty()) {
+      return false;
+    }
+    UnusedImportScanner scanner = new UnusedImportScanner();
+    scanner.scan(unit, null);
+    for (JCTree importTree : unit.getImports()) {
+      if (!isModuleImport(importTree)
+          && isUnused(
+              unit,
+              scanner.usedNames,
+              scanner.usedInJavadoc,
+              importTree,
+              getSimpleName(importTree))) {
+        return true;
+      }
     }
-    return unit;
+    return false;
   }
 
   /** Construct replacements to fix unused imports. */
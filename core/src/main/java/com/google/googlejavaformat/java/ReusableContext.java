@@ -0,0 +1,107 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.sun.tools.javac.file.JavacFileManager;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Options;
+import java.io.IOError;
+import java.io.IOException;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A javac {@link Context} for parsing and lexing that is reused for many inputs on the same thread.
+ * Setting up a context (its log, name table, and parser and scanner factories) is a large part of
+ * the cost of formatting a small file.
+ *
+ * <p>A context accumulates a little state for every input it sees: the log remembers each source
+ * and error position, and the name table keeps every identifier. To keep that bounded, a context is
+ * discarded after {@link #MAX_USES} inputs, or as soon as an input has errors (since the log stops
+ * reporting errors once it has seen too many).
+ *
+ * <p>Usage:
+ *
+ * <pre>{@code
+ * ReusableContext context = ReusableContext.acquire();
+ * try {
+ *   ... context.context() ...
+ * } finally {
+ *   context.release();
+ * }
+ * }</pre>
+ */
+final class ReusableContext {
+
+  private static final int MAX_USES = 32;
+
+  private static final ThreadLocal<@Nullable ReusableContext> AVAILABLE = new ThreadLocal<>();
+
+  private final Context context = new Context();
+  private DiagnosticListener<? super JavaFileObject> diagnosticListener = diagnostic -> {};
+  private int uses = 0;
+
+  private ReusableContext() {
+    // The context's listener is fixed once the log is created, so forward to the current one.
+    DiagnosticListener<JavaFileObject> forwardingListener =
+        diagnostic -> diagnosticListener.report(diagnostic);
+    context.put(DiagnosticListener.class, forwardingListener);
+    Options.instance(context).put("--enable-preview", "true");
+    JavacFileManager fileManager = new JavacFileManager(context, /* register= */ true, UTF_8);
+    try {
+      fileManager.setLocation(StandardLocation.PLATFORM_CLASS_PATH, ImmutableList.of());
+    } catch (IOException e) {
+      // impossible
+      throw new IOError(e);
+    }
+  }
+
+  /**
+   * Returns a context for use by the current thread, which must be {@linkplain #release released}
+   * afterwards. Contexts are never shared, so nested uses on the same thread get different ones.
+   */
+  static ReusableContext acquire() {
+    ReusableContext context = AVAILABLE.get();
+    if (context == null) {
+      return new ReusableContext();
+    }
+    AVAILABLE.remove();
+    return context;
+  }
+
+  Context context() {
+    return context;
+  }
+
+  /** Sets the listener that receives diagnostics until this context is released. */
+  void setDiagnosticListener(DiagnosticListener<? super JavaFileObject> diagnosticListener) {
+    this.diagnosticListener = diagnosticListener;
+  }
+
+  /** Makes this context available for reuse by the current thread, if it's still usable. */
+  void release() {
+    diagnosticListener = (Diagnostic<? extends JavaFileObject> diagnostic) -> {};
+    if (++uses < MAX_USES && Log.instance(context).nerrors == 0) {
+      AVAILABLE.set(this);
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.googlejavaformat.java.FormatStats.Phase;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Collects the {@link FormatStats} for one input.
+ *
+ * <p>While a recorder is {@linkplain #run running} on a thread, the formatter code on that thread
+ * reports to it through the static methods, which do nothing if no recorder is running. The phases
+ * of an input that is formatted on several threads are recorded separately, and then {@linkplain
+ * #merge merged}.
+ *
+ * <p>Usage:
+ *
+ * <pre>{@code
+ * try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.PARSE)) {
+ *   ...
+ * }
+ * }</pre>
+ */
+final class StatsRecorder {
+
+  /** Times a phase, until it is closed. */
+  interface Timer extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  /** A task to run while recording. */
+  interface Task<T, E extends Exception> {
+    T run() throws E;
+  }
+
+  private static final Timer NOT_RECORDING = () -> {};
+
+  private static final ThreadLocal<@Nullable StatsRecorder> CURRENT = new ThreadLocal<>();
+
+  private static final com.sun.management.@Nullable ThreadMXBean THREADS = threads();
+
+  private static com.sun.management.@Nullable ThreadMXBean threads() {
+    if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+        && threads.isThreadAllocatedMemorySupported()
+        && threads.isThreadAllocatedMemoryEnabled()) {
+      return threads;
+    }
+    return null;
+  }
+
+  /** The time and allocation charged to a phase. */
+  private static final class Counters {
+    long nanos;
+    long allocatedBytes;
+  }
+
+  private final int inputLength;
+  private final Map<Phase, Counters> phases = new EnumMap<>(Phase.class);
+  private int tokens;
+  private int docs;
+  private int replacements;
+
+  // The phases running on the current thread, innermost first, and when the innermost one was last
+  // charged for the time and allocation since.
+  private final Deque<Phase> running = new ArrayDeque<>();
+  private long markNanos;
+  private long markAllocatedBytes;
+  private final Timer stop = this::stop;
+
+  StatsRecorder(int inputLength) {
+    this.inputLength = inputLength;
+  }
+
+  /** Runs the given task with this recorder recording the work done on the current thread. */
+  <T, E extends Exception> T run(Task<T, E> task) throws E {
+    StatsRecorder previous = CURRENT.get();
+    CURRENT.set(this);
+    try {
+      return task.run();
+    } finally {
+      CURRENT.set(previous);
+    }
+  }
+
+  /** Returns true if a recorder is running on the current thread. */
+  static boolean recording() {
+    return CURRENT.get() != null;
+  }
+
+  /** Starts timing a phase on the current thread, and pauses the phase that was running. */
+  static Timer start(Phase phase) {
+    StatsRecorder recorder = CURRENT.get();
+    if (recorder == null) {
+      return NOT_RECORDING;
+    }
+    recorder.charge();
+    recorder.running.push(phase);
+    return recorder.stop;
+  }
+
+  /** Stops timing the innermost phase, and resumes the phase that was running before it. */
+  private void stop() {
+    charge();
+    running.pop();
+  }
+
+  private void charge() {
+    long now = System.nanoTime();
+    long allocated = THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    Phase phase = running.peek();
+    if (phase != null) {
+      Counters counters = phases.computeIfAbsent(phase, p -> new Counters());
+      counters.nanos += now - markNanos;
+      if (allocated >= 0 && markAllocatedBytes >= 0) {
+        counters.allocatedBytes += allocated - markAllocatedBytes;
+      }
+    }
+    markNanos = now;
+    markAllocatedBytes = allocated;
+  }
+
+  static void countTokens(int count) {
+    StatsRecorder recorder = CURRENT.get();
+    if (recorder != null) {
+      recorder.tokens += count;
+    }
+  }
+
+  static void countDocs(int count) {
+    StatsRecorder recorder = CURRENT.get();
+    if (recorder != null) {
+      recorder.docs += count;
+    }
+  }
+
+  static void countReplacements(int count) {
+    StatsRecorder recorder = CURRENT.get();
+    if (recorder != null) {
+      recorder.replacements += count;
+    }
+  }
+
+  /** Adds the stats recorded by another recorder, for part of the same input, to this one. */
+  synchronized void merge(StatsRecorder other) {
+    other.phases.forEach(
+        (phase, counters) -> {
+          Counters merged = phases.computeIfAbsent(phase, p -> new Counters());
+          merged.nanos += counters.nanos;
+          merged.allocatedBytes += counters.allocatedBytes;
+        });
+    tokens += other.tokens;
+    docs += other.docs;
+    replacements += other.replacements;
+  }
+
+  synchronized FormatStats build() {
+    Map<Phase, Duration> phaseTimes = new EnumMap<>(Phase.class);
+    Map<Phase, Long> phaseAllocatedBytes = new EnumMap<>(Phase.class);
+    phases.forEach(
+        (phase, counters) -> {
+          if (counters.nanos > 0) {
+            phaseTimes.put(phase, Duration.ofNanos(counters.nanos));
+            if (THREADS != null) {
+              phaseAllocatedBytes.put(phase, counters.allocatedBytes);
+            }
+          }
+        });
+    return new FormatStats(
+        inputLength,
+        tokens,
+        docs,
+        replacements,
+        ImmutableMap.copyOf(phaseTimes),
+        ImmutableMap.copyOf(phaseAllocatedBytes));
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import static java.util.Comparator.comparing;
+
+import com.google.common.base.Ascii;
+import com.google.common.cache.CacheStats;
+import com.google.googlejavaformat.java.FormatStats.Phase;
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/** Aggregates the {@link FormatStats} of the files formatted by the CLI, for {@code --stats}. */
+final class StatsReport {
+
+  /** The number of files to list in the report of the slowest files. */
+  static final int SLOWEST_FILES = 10;
+
+  private record FileStats(String name, Duration time) {}
+
+  private final Map<Phase, Long> nanos = new EnumMap<>(Phase.class);
+  private final Map<Phase, Long> allocatedBytes = new EnumMap<>(Phase.class);
+  private boolean allocationMeasured;
+  private int files;
+  private long inputLength;
+  private long tokens;
+  private long docs;
+  private long replacements;
+
+  // The slowest files so far, fastest first.
+  private final PriorityQueue<FileStats> slowest = new PriorityQueue<>(comparing(FileStats::time));
+
+  // The javadoc cache may be shared with earlier runs (e.g. by a FormatterServer), so only the
+  // lookups since this report was created are reported.
+  private final JavadocCache javadocCache;
+  private final CacheStats javadocCacheStart;
+
+  StatsReport(JavadocCache javadocCache) {
+    this.javadocCache = javadocCache;
+    this.javadocCacheStart = javadocCache.stats();
+  }
+
+  /** Adds the stats for a file. */
+  void add(String name, FormatStats stats) {
+    files++;
+    inputLength += stats.inputLength();
+    tokens += stats.tokens();
+    docs += stats.docs();
+    replacements += stats.replacements();
+    for (Map.Entry<Phase, Duration> entry : stats.phaseTimes().entrySet()) {
+      nanos.merge(entry.getKey(), entry.getValue().toNanos(), Long::sum);
+    }
+    for (Map.Entry<Phase, Long> entry : stats.phaseAllocatedBytes().entrySet()) {
+      allocatedBytes.merge(entry.getKey(), entry.getValue(), Long::sum);
+      allocationMeasured = true;
+    }
+    slowest.add(new FileStats(name, stats.totalTime()));
+    if (slowest.size() > SLOWEST_FILES) {
+      slowest.remove();
+    }
+  }
+
+  /** Prints the time and allocation for each phase, and the slowest files. */
+  void print(PrintWriter out) {
+    out.printf(
+        "Formatted %d file%s: %d characters, %d tokens, %d docs, %d replacements%n",
+        files, files == 1 ? "" : "s", inputLength, tokens, docs, replacements);
+    long totalNanos = nanos.values().stream().mapToLong(Long::longValue).sum();
+    long totalAllocatedBytes = allocatedBytes.values().stream().mapToLong(Long::longValue).sum();
+    out.printf("%n%-24s %12s %7s %16s%n", "phase", "time (ms)", "%", "allocated (MB)");
+    // Phases are listed in the order they're declared in.
+    for (Map.Entry<Phase, Long> entry : nanos.entrySet()) {
+      if (entry.getValue() == 0) {
+        continue;
+      }
+      printRow(
+          out,
+          Ascii.toLowerCase(entry.getKey().name()).replace('_', ' '),
+          entry.getValue(),
+          totalNanos,
+          allocatedBytes.getOrDefault(entry.getKey(), 0L));
+    }
+    printRow(out, "total", totalNanos, totalNanos, totalAllocatedBytes);
+
+    CacheStats javadocCacheStats = javadocCache.stats().minus(javadocCacheStart);
+    if (javadocCacheStats.requestCount() > 0) {
+      out.printf(
+          "%nJavadoc cache: %d hits, %d misses (%.1f%% hit rate), %d evictions, %d entries%n",
+          javadocCacheStats.hitCount(),
+          javadocCacheStats.missCount(),
+          100.0 * javadocCacheStats.hitRate(),
+          javadocCacheStats.evictionCount(),
+          javadocCache.size());
+    }
+
+    List<FileStats> files = new ArrayList<>(slowest);
+    files.sort(comparing(FileStats::time).reversed());
+    out.printf("%nSlowest files:%n");
+    for (FileStats file : files) {
+      out.printf("%12.1f ms  %s%n", file.time().toNanos() / 1e6, file.name());
+    }
+  }
+
+  private void printRow(
+      PrintWriter out, String name, long nanos, long totalNanos, long allocatedBytes) {
+    out.printf(
+        "%-24s %12.1f %6.1f%% %16s%n",
+        name,
+        nanos / 1e6,
+        totalNanos == 0 ? 0.0 : 100.0 * nanos / totalNanos,
+        allocationMeasured ? String.format("%.1f", allocatedBytes / 1e6) : "-");
+  }
+}
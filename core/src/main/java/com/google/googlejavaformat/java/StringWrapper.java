@@ -18,6 +18,7 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.Iterables.getLast;
 import static com.google.googlejavaformat.java.Trees.getEndPosition;
 import static com.google.googlejavaformat.java.Trees.getStartPosition;
+import static java.lang.Math.max;
 import static java.lang.Math.min;
 import static java.util.stream.Collectors.joining;
 
@@ -25,9 +26,12 @@ import com.google.common.base.CharMatcher;
 import com.google.common.base.Strings;
 import com.google.common.base.Verify;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Range;
+import com.google.common.collect.Sets;
 import com.google.common.collect.TreeRangeMap;
 import com.google.googlejavaformat.Newlines;
+import com.google.googlejavaformat.java.FormatStats.Phase;
 import com.sun.source.tree.BinaryTree;
 import com.sun.source.tree.LiteralTree;
 import com.sun.source.tree.MemberSelectTree;
@@ -35,18 +39,24 @@ import com.sun.source.tree.Tree;
 import com.sun.source.tree.Tree.Kind;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.TreePathScanner;
+import com.sun.tools.javac.parser.Tokens.TokenKind;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
 import com.sun.tools.javac.util.Position;
+import java.net.URI;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import org.jspecify.annotations.Nullable;
 
 /** Wraps string literals that exceed the column limit. */
 public final class StringWrapper {
@@ -63,13 +73,35 @@ public final class StringWrapper {
    */
   static String wrap(final int columnLimit, String input, Formatter formatter)
       throws FormatterException {
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.WRAP_STRINGS)) {
+      return wrapInternal(columnLimit, input, formatter);
+    }
+  }
+
+  /**
+   * Like {@link #wrap(int, String, Formatter)}, for Java source code that is the output of the
+   * formatter. Formatting it again wouldn't change it, so the lines with long strings don't need to
+   * be formatted before the strings are reflowed, and the input is only parsed once.
+   */
+  static String wrapFormatted(final int columnLimit, String input) throws FormatterException {
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.WRAP_STRINGS)) {
+      return wrapInternal(columnLimit, input, /* formatter= */ null);
+    }
+  }
+
+  private static String wrapInternal(
+      final int columnLimit, String input, @Nullable Formatter formatter)
+      throws FormatterException {
     if (!needWrapping(columnLimit, input)) {
       // fast path
       return input;
     }
 
     TreeRangeMap<Integer, String> replacements = getReflowReplacements(columnLimit, input);
-    String firstPass = formatter.formatSource(input, replacements.asMapOfRanges().keySet());
+    String firstPass =
+        formatter == null
+            ? input
+            : formatter.formatSource(input, replacements.asMapOfRanges().keySet());
 
     if (!firstPass.equals(input)) {
       // If formatting the replacement ranges resulted in a change, recalculate the replacements on
@@ -77,29 +109,193 @@ public final class StringWrapper {
       input = firstPass;
       replacements = getReflowReplacements(columnLimit, input);
     }
+    if (replacements.asMapOfRanges().isEmpty()) {
+      // Nothing to reflow, so there's nothing to verify.
+      return input;
+    }
 
     String result = applyReplacements(input, replacements);
 
-    {
+    try (StatsRecorder.Timer timer = StatsRecorder.start(Phase.VERIFY_WRAPPED_STRINGS)) {
       // We really don't want bugs in this pass to change the behaviour of programs we're
-      // formatting, so check that the pretty-printed AST is the same before and after reformatting.
-      String expected = parse(input, /* allowStringFolding= */ true).toString();
-      String actual = parse(result, /* allowStringFolding= */ true).toString();
-      if (!expected.equals(actual)) {
-        throw new FormatterException(
-            String.format(
-                "Something has gone terribly wrong. We planned to make the below formatting change,"
-                    + " but have aborted because it would unexpectedly change the AST.\n"
-                    + "Please file a bug: "
-                    + "https://github.com/google/google-java-format/issues/new"
-                    + "\n\n=== Actual: ===\n%s\n=== Expected: ===\n%s\n",
-                actual, expected));
-      }
+      // formatting, so check that the replacements don't change the AST.
+      verifyReplacements(input, replacements);
     }
 
     return result;
   }
 
+  /**
+   * Tokens that bind more tightly than a binary {@code +} to a string literal that follows them,
+   * e.g. the cast in {@code (Object) "a" + "b"}.
+   */
+  private static final ImmutableSet<TokenKind> BINDS_TIGHTER_BEFORE =
+      Sets.immutableEnumSet(
+          TokenKind.STAR,
+          TokenKind.SLASH,
+          TokenKind.PERCENT,
+          TokenKind.SUB,
+          TokenKind.BANG,
+          TokenKind.TILDE,
+          TokenKind.PLUSPLUS,
+          TokenKind.SUBSUB,
+          TokenKind.RPAREN);
+
+  /**
+   * Tokens that bind more tightly than a binary {@code +} to a string literal that precedes them,
+   * e.g. the method call in {@code "a" + "b".length()}.
+   */
+  private static final ImmutableSet<TokenKind> BINDS_TIGHTER_AFTER =
+      Sets.immutableEnumSet(
+          TokenKind.DOT,
+          TokenKind.LBRACKET,
+          TokenKind.COLCOL,
+          TokenKind.STAR,
+          TokenKind.SLASH,
+          TokenKind.PERCENT,
+          TokenKind.PLUSPLUS,
+          TokenKind.SUBSUB);
+
+  /**
+   * Checks that each replacement has the same tokens as the text it replaces, once string literals
+   * that are concatenated with each other are folded into one. Literals are only folded if the
+   * tokens on either side of the concatenation can't take one of them as an operand instead (as in
+   * {@code "a" + "b".length()}), which is how javac folds them when parsing. So this checks that
+   * the AST (with string folding) is unchanged, without parsing the whole input twice.
+   */
+  static void verifyReplacements(String input, TreeRangeMap<Integer, String> replacements)
+      throws FormatterException {
+    ReusableContext reusableContext = ReusableContext.acquire();
+    try {
+      // The tokens around each replacement decide which of its literals can be folded.
+      List<JavacTokens.RawTok> inputTokens = lex(reusableContext, input);
+      if (inputTokens == null) {
+        throw new FormatterException("Failed to lex the input to verify wrapped strings");
+      }
+      int i = 0;
+      for (Map.Entry<Range<Integer>, String> entry : replacements.asMapOfRanges().entrySet()) {
+        Range<Integer> range = entry.getKey();
+        TokenKind before = null;
+        while (i < inputTokens.size() && inputTokens.get(i).endPos() <= range.lowerEndpoint()) {
+          before = inputTokens.get(i).kind();
+          i++;
+        }
+        List<JavacTokens.RawTok> replaced = new ArrayList<>();
+        while (i < inputTokens.size() && inputTokens.get(i).endPos() <= range.upperEndpoint()) {
+          replaced.add(inputTokens.get(i));
+          i++;
+        }
+        TokenKind after = i < inputTokens.size() ? inputTokens.get(i).kind() : null;
+        String expected = input.substring(range.lowerEndpoint(), range.upperEndpoint());
+        String actual = entry.getValue();
+        List<JavacTokens.RawTok> actualTokens = lex(reusableContext, actual);
+        if (actualTokens == null
+            || !fold(input, replaced, before, after)
+                .equals(fold(actual, actualTokens, before, after))) {
+          throw new FormatterException(
+              String.format(
+                  "Something has gone terribly wrong. We planned to make the below formatting"
+                      + " change, but have aborted because it would unexpectedly change the AST.\n"
+                      + "Please file a bug: "
+                      + "https://github.com/google/google-java-format/issues/new"
+                      + "\n\n=== Actual: ===\n%s\n=== Expected: ===\n%s\n",
+                  actual, expected));
+        }
+      }
+    } finally {
+      reusableContext.release();
+    }
+  }
+
+  /**
+   * Returns the tokens of the given source, without whitespace and comments, or {@code null} if the
+   * source can't be lexed.
+   */
+  private static @Nullable List<JavacTokens.RawTok> lex(
+      ReusableContext reusableContext, String source) {
+    Context context = reusableContext.context();
+    AtomicBoolean errors = new AtomicBoolean();
+    reusableContext.setDiagnosticListener(
+        diagnostic -> {
+          if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+            errors.set(true);
+          }
+        });
+    Log.instance(context)
+        .useSource(
+            new SimpleJavaFileObject(URI.create("Source.java"), JavaFileObject.Kind.SOURCE) {
+              @Override
+              public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+              }
+            });
+    List<JavacTokens.RawTok> tokens = new ArrayList<>();
+    for (JavacTokens.RawTok tok :
+        JavacTokens.getTokens(source, context, EnumSet.of(TokenKind.EOF))) {
+      if (tok.kind() != null) {
+        tokens.add(tok);
+      }
+    }
+    return errors.get() ? null : tokens;
+  }
+
+  /**
+   * Returns the text of the given tokens, with each string literal replaced by its value in double
+   * quotes, and with string literals that are joined by {@code +} concatenated where javac would
+   * fold them. The tokens before and after the given ones are {@code before} and {@code after}.
+   */
+  private static List<String> fold(
+      String source,
+      List<JavacTokens.RawTok> tokens,
+      @Nullable TokenKind before,
+      @Nullable TokenKind after) {
+    List<String> folded = new ArrayList<>();
+    int i = 0;
+    while (i < tokens.size()) {
+      JavacTokens.RawTok tok = tokens.get(i);
+      if (tok.kind() != TokenKind.STRINGLITERAL) {
+        folded.add(text(source, tok));
+        i++;
+        continue;
+      }
+      // Find the run of literals joined by +, from tokens i to j.
+      int j = i;
+      while (j + 2 < tokens.size()
+          && tokens.get(j + 1).kind() == TokenKind.PLUS
+          && tokens.get(j + 2).kind() == TokenKind.STRINGLITERAL) {
+        j += 2;
+      }
+      TokenKind previous = i > 0 ? tokens.get(i - 1).kind() : before;
+      TokenKind next = j + 1 < tokens.size() ? tokens.get(j + 1).kind() : after;
+      // A literal that a neighbouring token binds to more tightly isn't part of the folded run.
+      int first = previous != null && BINDS_TIGHTER_BEFORE.contains(previous) ? i + 2 : i;
+      int last = next != null && BINDS_TIGHTER_AFTER.contains(next) ? j - 2 : j;
+      for (int k = i; k < first && k <= j; k++) {
+        folded.add(text(source, tokens.get(k)));
+      }
+      if (first <= last) {
+        StringBuilder value = new StringBuilder("\"");
+        for (int k = first; k <= last; k += 2) {
+          String literal = tokens.get(k).stringVal();
+          value.append(literal, 1, literal.length() - 1);
+        }
+        folded.add(value.append('"').toString());
+      }
+      for (int k = max(first, last + 1); k <= j; k++) {
+        folded.add(text(source, tokens.get(k)));
+      }
+      i = j + 1;
+    }
+    return folded;
+  }
+
+  /** Returns the value of a string literal in double quotes, or the text of any other token. */
+  private static String text(String source, JavacTokens.RawTok tok) {
+    return tok.kind() == TokenKind.STRINGLITERAL
+        ? tok.stringVal()
+        : source.substring(tok.pos(), tok.endPos());
+  }
+
   private static TreeRangeMap<Integer, String> getReflowReplacements(
       int columnLimit, final String input) throws FormatterException {
     return new Reflower(columnLimit, input).getReflowReplacements();
@@ -117,7 +313,7 @@ public final class StringWrapper {
       this.columnLimit = columnLimit;
       this.input = input;
       this.separator = Newlines.guessLineSeparator(input);
-      this.unit = parse(input, /* allowStringFolding= */ false);
+      this.unit = Trees.parse(input, /* allowStringFolding= */ false);
       this.lineMap = unit.getLineMap();
     }
 
@@ -170,6 +366,26 @@ public final class StringWrapper {
         longStringLiterals.add(getCurrentPath());
         return null;
       }
+
+      @Override
+      public Void visitBinary(BinaryTree binaryTree, Void aVoid) {
+        // Long concatenations are deeply nested on the left, so walk down the left operands
+        // iteratively, and then scan the operands in order.
+        Deque<TreePath> chain = new ArrayDeque<>();
+        TreePath path = getCurrentPath();
+        Tree operand = binaryTree;
+        while (operand instanceof BinaryTree binary) {
+          chain.push(path);
+          operand = binary.getLeftOperand();
+          path = new TreePath(path, operand);
+        }
+        scan(path, null);
+        for (TreePath binaryPath : chain) {
+          BinaryTree binary = (BinaryTree) binaryPath.getLeaf();
+          scan(new TreePath(binaryPath, binary.getRightOperand()), null);
+        }
+        return null;
+      }
     }
 
     private void indentTextBlocks(
@@ -463,20 +679,6 @@ public final class StringWrapper {
     return false;
   }
 
-  /** Parses the given Java source. */
-  private static JCTree.JCCompilationUnit parse(String source, boolean allowStringFolding)
-      throws FormatterException {
-    List<Diagnostic<? extends JavaFileObject>> errorDiagnostics = new ArrayList<>();
-    Context context = new Context();
-    JCTree.JCCompilationUnit unit =
-        Trees.parse(context, errorDiagnostics, allowStringFolding, source);
-    if (!errorDiagnostics.isEmpty()) {
-      // error handling is done during formatting
-      throw FormatterException.fromJavacDiagnostics(errorDiagnostics);
-    }
-    return unit;
-  }
-
   /** Applies replacements to the given string. */
   private static String applyReplacements(
       String javaInput, TreeRangeMap<Integer, String> replacementMap) throws FormatterException {
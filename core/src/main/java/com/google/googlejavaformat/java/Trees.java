@@ -14,10 +14,7 @@
 
 package com.google.googlejavaformat.java;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import com.google.common.base.Throwables;
-import com.google.common.collect.ImmutableList;
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.CompoundAssignmentTree;
 import com.sun.source.tree.ExpressionTree;
@@ -27,11 +24,14 @@ import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.ParenthesizedTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
-import com.sun.tools.javac.file.JavacFileManager;
 import com.sun.tools.javac.parser.JavacParser;
 import com.sun.tools.javac.parser.ParserFactory;
 import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCArrayAccess;
+import com.sun.tools.javac.tree.JCTree.JCBinary;
 import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.JCTree.JCFieldAccess;
+import com.sun.tools.javac.tree.JCTree.JCMethodInvocation;
 import com.sun.tools.javac.tree.Pretty;
 import com.sun.tools.javac.tree.TreeInfo;
 import com.sun.tools.javac.util.Context;
@@ -44,13 +44,12 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.invoke.VarHandle;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 import javax.lang.model.element.Name;
 import javax.tools.Diagnostic;
-import javax.tools.DiagnosticListener;
 import javax.tools.JavaFileObject;
 import javax.tools.SimpleJavaFileObject;
-import javax.tools.StandardLocation;
 import org.jspecify.annotations.Nullable;
 
 /** Utilities for working with {@link Tree}s. */
@@ -62,7 +61,22 @@ class Trees {
 
   /** Returns the source start position of the node. */
   static int getStartPosition(Tree expression) {
-    return ((JCTree) expression).getStartPosition();
+    // javac's TreeInfo.getStartPos recurses into the leftmost operand, which can overflow the stack
+    // for long chains of binary operators or method calls, so walk down those chains here.
+    JCTree tree = (JCTree) expression;
+    while (true) {
+      if (tree instanceof JCBinary binary) {
+        tree = binary.lhs;
+      } else if (tree instanceof JCMethodInvocation invocation) {
+        tree = invocation.meth;
+      } else if (tree instanceof JCFieldAccess fieldAccess) {
+        tree = fieldAccess.selected;
+      } else if (tree instanceof JCArrayAccess arrayAccess) {
+        tree = arrayAccess.indexed;
+      } else {
+        return tree.getStartPosition();
+      }
+    }
   }
 
   /** Returns the source end position of the node. */
@@ -133,27 +147,47 @@ class Trees {
     return ((ParenthesizedTree) node).getExpression();
   }
 
+  /**
+   * Parses the given Java source.
+   *
+   * @throws FormatterException if the source cannot be parsed
+   */
+  static JCCompilationUnit parse(String source, boolean allowStringFolding)
+      throws FormatterException {
+    List<Diagnostic<? extends JavaFileObject>> errorDiagnostics = new ArrayList<>();
+    JCCompilationUnit unit = parse(errorDiagnostics, allowStringFolding, source);
+    if (!errorDiagnostics.isEmpty()) {
+      // error handling is done during formatting
+      throw FormatterException.fromJavacDiagnostics(errorDiagnostics);
+    }
+    return unit;
+  }
+
+  /**
+   * Parses the given Java source, adding any errors to {@code errorDiagnostics}. The parse uses the
+   * current thread's {@link ReusableContext}.
+   */
   static JCCompilationUnit parse(
-      Context context,
       List<Diagnostic<? extends JavaFileObject>> errorDiagnostics,
       boolean allowStringFolding,
       String javaInput) {
-    DiagnosticListener<JavaFileObject> diagnostics =
-        diagnostic -> {
-          if (errorDiagnostic(diagnostic)) {
-            errorDiagnostics.add(diagnostic);
-          }
-        };
-    context.put(DiagnosticListener.class, diagnostics);
-    Options.instance(context).put("--enable-preview", "true");
-    Options.instance(context).put("allowStringFolding", Boolean.toString(allowStringFolding));
-    JavacFileManager fileManager = new JavacFileManager(context, /* register= */ true, UTF_8);
+    ReusableContext reusableContext = ReusableContext.acquire();
     try {
-      fileManager.setLocation(StandardLocation.PLATFORM_CLASS_PATH, ImmutableList.of());
-    } catch (IOException e) {
-      // impossible
-      throw new IOError(e);
+      reusableContext.setDiagnosticListener(
+          diagnostic -> {
+            if (errorDiagnostic(diagnostic)) {
+              errorDiagnostics.add(diagnostic);
+            }
+          });
+      return parse(reusableContext.context(), allowStringFolding, javaInput);
+    } finally {
+      reusableContext.release();
     }
+  }
+
+  private static JCCompilationUnit parse(
+      Context context, boolean allowStringFolding, String javaInput) {
+    Options.instance(context).put("allowStringFolding", Boolean.toString(allowStringFolding));
     SimpleJavaFileObject source =
         new SimpleJavaFileObject(URI.create("source"), JavaFileObject.Kind.SOURCE) {
           @Override
@@ -52,6 +52,23 @@ Options:
     Prints the paths of the files whose contents would change if the formatter were run normally.
   --set-exit-if-changed
     Return exit code 1 if there are any formatting changes.
+  --include
+    When formatting a directory, only format the files in it whose path relative to the directory
+    matches the glob, e.g. **Test.java.
+  --exclude
+    When formatting a directory, skip the files and subdirectories in it whose path relative to the
+    directory matches the glob, e.g. generated/**.
+  --threads
+    The number of threads to format files on. Defaults to the number of available processors.
+  --io-threads
+    The maximum number of files to read or write concurrently. Defaults to 20.
+  --split-large-files
+    Format the top-level types of very large files in parallel.
+  --cache-dir
+    Directory in which to remember files that are already formatted, so later runs can skip them.
+  --stats
+    Print the time spent in each phase of formatting, the javadoc cache hit rate, and the slowest
+    files, to stderr.
   --lines, -lines, --line, -line
     Line range(s) to format, e.g. the first 5 lines are 1:5 (1-based; default is all).
   --offset, -offset
@@ -73,6 +90,8 @@ If -i is given with -, the result is sent to stdout.
 The --lines, --offset, and --length flags may be given more than once.
 The --offset and --length flags must be given an equal number of times.
 If --lines, --offset, or --length are given, only one file (or -) may be given.
+Directories are searched recursively for .java files.
+The --include and --exclude flags may be given more than once.
 """;
 
   UsageException() {
@@ -16,9 +16,6 @@ package com.google.googlejavaformat.java.javadoc;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * String reader designed for use from the lexer. Callers invoke the {@link #tryConsume tryConsume*}
  * methods to specify what characters they expect and then {@link #readAndResetRecorded} to retrieve
@@ -43,16 +40,16 @@ final class CharStream {
   }
 
   /**
-   * Tries to consume characters from the current position that match the given pattern.
+   * Tries to consume the characters from the current position to the given end, which the caller
+   * has matched.
    *
-   * @param pattern the pattern to search for, which must be anchored to match only at position 0
+   * @param end the end of the matched characters, or -1 if they didn't match
    */
-  boolean tryConsumeRegex(Pattern pattern) {
-    Matcher matcher = pattern.matcher(input).region(position, input.length());
-    if (!matcher.lookingAt()) {
+  boolean tryConsumeTo(int end) {
+    if (end < 0) {
       return false;
     }
-    tokenEnd = matcher.end();
+    tokenEnd = end;
     return true;
   }
 
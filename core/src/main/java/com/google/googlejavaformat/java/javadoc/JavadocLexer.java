@@ -14,13 +14,8 @@
 
 package com.google.googlejavaformat.java.javadoc;
 
-import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.collect.Iterators.peekingIterator;
-import static java.lang.String.format;
-import static java.util.regex.Pattern.CASE_INSENSITIVE;
-import static java.util.regex.Pattern.DOTALL;
-import static java.util.regex.Pattern.compile;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.collect.ImmutableList;
@@ -66,7 +61,6 @@ import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
 import java.util.function.Function;
-import java.util.regex.Pattern;
 
 /** Lexer for the Javadoc formatter. */
 final class JavadocLexer {
@@ -83,18 +77,18 @@ final class JavadocLexer {
         throw new LexException(e);
       }
     }
-    return new JavadocLexer(new CharStream(input), markdownPositions, classicJavadoc)
-        .generateTokens();
+    return new JavadocLexer(input, markdownPositions, classicJavadoc).generateTokens();
   }
 
   /** The lexer crashes on windows line endings, so for now just normalize to `\n`. */
   // TODO(cushon): use the platform line separator for output
   private static String normalizeLineEndings(String input) {
-    return NON_UNIX_LINE_ENDING.matcher(input).replaceAll("\n");
+    if (input.indexOf('\r') == -1) {
+      return input;
+    }
+    return input.replace("\r\n", "\n").replace('\r', '\n');
   }
 
-  private static final Pattern NON_UNIX_LINE_ENDING = Pattern.compile("\r\n?");
-
   /**
    * An element of the nested contexts we might be in. For example, if we are inside {@code
    * <pre>{@code ...}</pre>} then the stack of nested contexts would be {@code PRE} plus {@code
@@ -129,15 +123,16 @@ final class JavadocLexer {
     BLOCKQUOTE
   }
 
+  private final String text;
   private final CharStream input;
   private final boolean classicJavadoc;
   private final MarkdownPositions markdownPositions;
   private final NestingStack<NestingContext> contextStack = new NestingStack<>();
   private boolean somethingSinceNewline;
 
-  private JavadocLexer(
-      CharStream input, MarkdownPositions markdownPositions, boolean classicJavadoc) {
-    this.input = checkNotNull(input);
+  private JavadocLexer(String text, MarkdownPositions markdownPositions, boolean classicJavadoc) {
+    this.text = text;
+    this.input = new CharStream(text);
     this.markdownPositions = markdownPositions;
     this.classicJavadoc = classicJavadoc;
   }
@@ -228,8 +223,10 @@ final class JavadocLexer {
 
   private Function<String, Token> consumeToken() throws LexException {
     boolean preserveExistingFormatting = preserveExistingFormatting();
+    int position = input.position();
+    char c = text.charAt(position);
 
-    if (input.tryConsumeRegex(NEWLINE_PATTERN)) {
+    if (input.tryConsumeTo(newlineEnd(text, position))) {
       somethingSinceNewline = false;
       return preserveExistingFormatting ? ForcedNewline::new : Whitespace::new;
     }
@@ -237,11 +234,12 @@ final class JavadocLexer {
     if (!classicJavadoc
         && !somethingSinceNewline
         && contextStack.contains(NestingContext.BLOCKQUOTE)
-        && input.tryConsumeRegex(BLOCKQUOTE_MARKER_PATTERN)) {
+        && (input.tryConsume("> ") || input.tryConsume(">"))) {
       return BlockQuoteMarker::new;
     }
 
-    if (input.tryConsume(" ") || input.tryConsume("\t")) {
+    if (c == ' ' || c == '\t') {
+      input.tryConsumeTo(position + 1);
       // TODO(cpovirk): How about weird whitespace chars? Ideally we'd distinguish breaking vs. not.
       // Returning Literal here prevents us from breaking a <pre> line. For more info, see Literal.
       return preserveExistingFormatting ? Literal::new : Whitespace::new;
@@ -251,21 +249,21 @@ final class JavadocLexer {
       // Consume one or more characters. We know the first character isn't a newline or space
       // because we've eliminated those possibilities, and it can't be the end of the `...` span
       // either because that would have caused us to pop MARKDOWN_CODE_CONTEXT from the stack. The
-      // remaining characters being matched *could* be those things, so the regex stops at
+      // remaining characters being matched *could* be those things, so the match stops at
       // whitespace or a backtick. The *first* character could be a backtick, in constructs like
       // `` `foo` ``, where the backticks adjacent to "foo" are part of the text of the code span.
       //
       // Backslash has no special meaning inside `...` so this code precedes the backslash code.
-      verify(input.tryConsumeRegex(WORD_IN_CODE_SPAN_PATTERN));
+      verify(input.tryConsumeTo(wordInCodeSpanEnd(text, position)));
       return Literal::new;
     }
-    if (!classicJavadoc) {
+    if (!classicJavadoc && c == '\\') {
       // Markdown backslash handling. \ at end of line, optionally followed by whitespace, is a hard
       // line break. \ elsewhere cancels any special meaning of the following character.
-      if (input.tryConsumeRegex(MARKDOWN_HARD_LINE_BREAK_PATTERN)) {
+      if (input.tryConsumeTo(hardLineBreakEnd(text, position))) {
         somethingSinceNewline = false;
         return MarkdownHardLineBreak::new;
-      } else if (input.tryConsumeRegex(BACKSLASH_PLUS_CHARACTER_PATTERN)) {
+      } else if (input.tryConsumeTo(escapedCharacterEnd(text, position))) {
         somethingSinceNewline = true;
         return Literal::new;
       }
@@ -277,35 +275,38 @@ final class JavadocLexer {
      * great options for fixing it.
      * https://github.com/google/google-java-format/issues/7#issuecomment-197383926
      */
-    if (!somethingSinceNewline && input.tryConsumeRegex(FOOTER_TAG_PATTERN)) {
+    if (!somethingSinceNewline && input.tryConsumeTo(footerTagEnd(text, position))) {
       checkMatchingTags();
       somethingSinceNewline = true;
       return FooterJavadocTagStart::new;
     }
     somethingSinceNewline = true;
 
-    if (input.tryConsumeRegex(SNIPPET_TAG_OPEN_PATTERN)) {
-      // {@snippet ...}
-      if (contextStack.containsAny(BRACE_CONTEXTS)) {
-        contextStack.push(NestingContext.BRACE_CONTEXT);
+    if (c == '{') {
+      if (input.tryConsumeTo(snippetTagOpenEnd(text, position))) {
+        // {@snippet ...}
+        if (contextStack.containsAny(BRACE_CONTEXTS)) {
+          contextStack.push(NestingContext.BRACE_CONTEXT);
+          return Literal::new;
+        } else {
+          contextStack.push(NestingContext.SNIPPET_CONTEXT);
+          return SnippetBegin::new;
+        }
+      } else if (input.tryConsumeTo(inlineTagOpenEnd(text, position))) {
+        // {@foo ...}. We recognize this even in something like {@code {@foo ...}}, but it doesn't
+        // make any difference.
+        contextStack.push(NestingContext.INLINE_TAG_CONTEXT);
         return Literal::new;
-      } else {
-        contextStack.push(NestingContext.SNIPPET_CONTEXT);
-        return SnippetBegin::new;
       }
-    } else if (input.tryConsumeRegex(INLINE_TAG_OPEN_PATTERN)) {
-      // {@foo ...}. We recognize this even in something like {@code {@foo ...}}, but it doesn't
-      // make any difference.
-      contextStack.push(NestingContext.INLINE_TAG_CONTEXT);
-      return Literal::new;
-    } else if (input.tryConsume("{")) {
       // A left brace that is not the start of {@foo}. We record the brace, for cases like
       // `{@code foo{bar}}`, where the second right brace is the end of the tag.
+      input.tryConsumeTo(position + 1);
       if (contextStack.containsAny(BRACE_CONTEXTS)) {
         contextStack.push(NestingContext.BRACE_CONTEXT);
       }
       return Literal::new;
-    } else if (input.tryConsume("}")) {
+    } else if (c == '}') {
+      input.tryConsumeTo(position + 1);
       var popped = contextStack.popIfIn(BRACE_CONTEXTS);
       if (popped == NestingContext.SNIPPET_CONTEXT) {
         return SnippetEnd::new;
@@ -314,69 +315,69 @@ final class JavadocLexer {
     }
 
     // Inside an inline tag, don't do any HTML interpretation.
-    if (contextStack.containsAny(TAG_CONTEXTS)) {
-      verify(input.tryConsumeRegex(literalPattern()));
+    if (contextStack.containsAny(TAG_CONTEXTS) || c != '<') {
+      verify(input.tryConsumeTo(literalEnd(position)));
       return Literal::new;
     }
 
-    if (input.tryConsumeRegex(PRE_OPEN_PATTERN)) {
+    if (input.tryConsumeTo(openTagEnd(text, position, "pre"))) {
       contextStack.push(NestingContext.HTML_PRE_CONTEXT);
       return preserveExistingFormatting ? Literal::new : PreOpenTag::new;
-    } else if (input.tryConsumeRegex(PRE_CLOSE_PATTERN)) {
+    } else if (input.tryConsumeTo(closeTagEnd(text, position, "pre"))) {
       contextStack.popUntil(NestingContext.HTML_PRE_CONTEXT);
       return preserveExistingFormatting() ? Literal::new : PreCloseTag::new;
     }
 
-    if (input.tryConsumeRegex(CODE_OPEN_PATTERN)) {
+    if (input.tryConsumeTo(openTagEnd(text, position, "code"))) {
       contextStack.push(NestingContext.HTML_CODE_CONTEXT);
       return preserveExistingFormatting ? Literal::new : CodeOpenTag::new;
-    } else if (input.tryConsumeRegex(CODE_CLOSE_PATTERN)) {
+    } else if (input.tryConsumeTo(closeTagEnd(text, position, "code"))) {
       contextStack.popUntil(NestingContext.HTML_CODE_CONTEXT);
       return preserveExistingFormatting() ? Literal::new : CodeCloseTag::new;
     }
 
-    if (input.tryConsumeRegex(TABLE_OPEN_PATTERN)) {
+    if (input.tryConsumeTo(openTagEnd(text, position, "table"))) {
       contextStack.push(NestingContext.TABLE);
       return preserveExistingFormatting ? Literal::new : TableOpenTag::new;
-    } else if (input.tryConsumeRegex(TABLE_CLOSE_PATTERN)) {
+    } else if (input.tryConsumeTo(closeTagEnd(text, position, "table"))) {
       contextStack.popUntil(NestingContext.TABLE);
       return preserveExistingFormatting() ? Literal::new : TableCloseTag::new;
     }
 
     if (preserveExistingFormatting) {
-      verify(input.tryConsumeRegex(literalPattern()));
+      verify(input.tryConsumeTo(literalEnd(position)));
       return Literal::new;
     }
 
-    if (input.tryConsumeRegex(PARAGRAPH_OPEN_PATTERN)) {
+    if (input.tryConsumeTo(openTagEnd(text, position, "p"))) {
       return ParagraphOpenTag::new;
-    } else if (input.tryConsumeRegex(PARAGRAPH_CLOSE_PATTERN)) {
+    } else if (input.tryConsumeTo(closeTagEnd(text, position, "p"))) {
       return ParagraphCloseTag::new;
-    } else if (input.tryConsumeRegex(LIST_OPEN_PATTERN)) {
+    } else if (input.tryConsumeTo(openTagEnd(text, position, "ul", "ol", "dl"))) {
       return ListOpenTag::new;
-    } else if (input.tryConsumeRegex(LIST_CLOSE_PATTERN)) {
+    } else if (input.tryConsumeTo(closeTagEnd(text, position, "ul", "ol", "dl"))) {
       return ListCloseTag::new;
-    } else if (input.tryConsumeRegex(LIST_ITEM_OPEN_PATTERN)) {
+    } else if (input.tryConsumeTo(openTagEnd(text, position, "li", "dt", "dd"))) {
       return ListItemOpenTag::new;
-    } else if (input.tryConsumeRegex(LIST_ITEM_CLOSE_PATTERN)) {
+    } else if (input.tryConsumeTo(closeTagEnd(text, position, "li", "dt", "dd"))) {
       return ListItemCloseTag::new;
-    } else if (input.tryConsumeRegex(BLOCKQUOTE_OPEN_PATTERN)) {
+    } else if (input.tryConsumeTo(openTagEnd(text, position, "blockquote"))) {
       return BlockQuoteOpenTag::new;
-    } else if (input.tryConsumeRegex(BLOCKQUOTE_CLOSE_PATTERN)) {
+    } else if (input.tryConsumeTo(closeTagEnd(text, position, "blockquote"))) {
       return BlockQuoteCloseTag::new;
-    } else if (input.tryConsumeRegex(HEADER_OPEN_PATTERN)) {
+    } else if (input.tryConsumeTo(openTagEnd(text, position, HEADERS))) {
       return HeaderOpenTag::new;
-    } else if (input.tryConsumeRegex(HEADER_CLOSE_PATTERN)) {
+    } else if (input.tryConsumeTo(closeTagEnd(text, position, HEADERS))) {
       return HeaderCloseTag::new;
-    } else if (input.tryConsumeRegex(BR_PATTERN)) {
+    } else if (input.tryConsumeTo(openTagEnd(text, position, "br"))) {
       return BrTag::new;
-    } else if (input.tryConsumeRegex(MOE_BEGIN_STRIP_COMMENT_PATTERN)) {
+    } else if (input.tryConsumeTo(moeStripCommentEnd(text, position, MOE_BEGIN_STRIP_COMMENT))) {
       return MoeBeginStripComment::new;
-    } else if (input.tryConsumeRegex(MOE_END_STRIP_COMMENT_PATTERN)) {
+    } else if (input.tryConsumeTo(moeStripCommentEnd(text, position, MOE_END_STRIP_COMMENT))) {
       return MoeEndStripComment::new;
-    } else if (input.tryConsumeRegex(HTML_COMMENT_PATTERN)) {
+    } else if (input.tryConsumeTo(htmlCommentEnd(text, position))) {
       return HtmlComment::new;
-    } else if (input.tryConsumeRegex(literalPattern())) {
+    } else if (input.tryConsumeTo(literalEnd(position))) {
       return Literal::new;
     }
     throw new AssertionError();
@@ -396,8 +397,8 @@ final class JavadocLexer {
    * Join together adjacent literal tokens, and join together adjacent whitespace tokens.
    *
    * <p>For literal tokens, this means something like {@code ["<b>", "foo", "</b>"] =>
-   * ["<b>foo</b>"]}. See {@link #literalPattern()} for discussion of why those tokens are separate
-   * to begin with.
+   * ["<b>foo</b>"]}. See {@link #literalEnd} for discussion of why those tokens are separate to
+   * begin with.
    *
    * <p>Whitespace tokens are treated analogously. The joining of whitespace tokens allows our
    * Markdown output to detect "loose lists" and our Traditional output to {@linkplain
@@ -520,7 +521,7 @@ final class JavadocLexer {
     ImmutableList.Builder<Token> output = ImmutableList.builder();
 
     for (PeekingIterator<Token> tokens = peekingIterator(input.iterator()); tokens.hasNext(); ) {
-      if (tokens.peek() instanceof Literal && tokens.peek().value().matches("href=[^>]*>")) {
+      if (tokens.peek() instanceof Literal && isLinkOpenTagEnd(tokens.peek().value())) {
         output.add(tokens.next());
 
         if (tokens.peek() instanceof Whitespace) {
@@ -540,6 +541,11 @@ final class JavadocLexer {
      */
   }
 
+  /** Whether a literal matches {@code href=[^>]*>}. */
+  private static boolean isLinkOpenTagEnd(String literal) {
+    return literal.startsWith("href=") && literal.indexOf('>') == literal.length() - 1;
+  }
+
   /**
    * Adjust indentation inside `<pre>{@code` blocks.
    *
@@ -559,7 +565,8 @@ final class JavadocLexer {
       while (tokens.hasNext() && tokens.peek() instanceof ForcedNewline) {
         initialNewlines.add(tokens.next());
       }
-      if (!(tokens.peek() instanceof Literal) || !tokens.peek().value().matches("[ \t]*[{]@code")) {
+      if (!(tokens.peek() instanceof Literal)
+          || !SPACES_AND_TABS.trimLeadingFrom(tokens.peek().value()).equals("{@code")) {
         output.addAll(initialNewlines);
         output.add(tokens.next());
         continue;
@@ -570,6 +577,8 @@ final class JavadocLexer {
     return output.build();
   }
 
+  private static final CharMatcher SPACES_AND_TABS = CharMatcher.anyOf(" \t");
+
   private static void deindentPreCodeBlock(
       ImmutableList.Builder<Token> output, PeekingIterator<Token> tokens) {
     Deque<Token> saved = new ArrayDeque<>();
@@ -659,6 +668,13 @@ final class JavadocLexer {
     return NEWLINE.countIn(s) > 1;
   }
 
+  /*
+   * The methods below each match what a regular expression (shown in its doc comment) would match
+   * at the start of some text, and return the end of the match, or -1 if there is no match. A
+   * regular expression's `.` matches a code point, which is not a line terminator unless the
+   * pattern is DOTALL, and `\w`, `\b` and case-insensitive matching only consider ASCII letters.
+   */
+
   /*
    * This also eats any trailing whitespace before the newline. We would be smart enough to ignore
    * that, anyway -- except in the case of <pre>/<table>, inside which we otherwise leave whitespace
@@ -669,43 +685,135 @@ final class JavadocLexer {
    */
   /*
    * The leading `///` or `*` characters and shared initial whitespace have been removed at the
-   * point where this pattern is applied.
+   * point where this is applied.
    */
-  private static final Pattern NEWLINE_PATTERN = compile("[ \t]*\n");
-  private static final Pattern BLOCKQUOTE_MARKER_PATTERN = compile("> ?");
+  /** {@code [ \t]*\n}. */
+  private static int newlineEnd(String text, int start) {
+    int i = skipSpacesAndTabs(text, start);
+    return i < text.length() && text.charAt(i) == '\n' ? i + 1 : -1;
+  }
+
+  /** {@code \\[ \t]*\n}. */
+  private static int hardLineBreakEnd(String text, int start) {
+    if (!text.startsWith("\\", start)) {
+      return -1;
+    }
+    return newlineEnd(text, start + 1);
+  }
+
+  /** {@code \\.}. */
+  private static int escapedCharacterEnd(String text, int start) {
+    if (!text.startsWith("\\", start) || start + 1 == text.length()) {
+      return -1;
+    }
+    int c = text.codePointAt(start + 1);
+    return isLineTerminator(c) ? -1 : start + 1 + Character.charCount(c);
+  }
+
+  /** {@code .[^ \t\n`]*}. */
+  private static int wordInCodeSpanEnd(String text, int start) {
+    int c = text.codePointAt(start);
+    if (isLineTerminator(c)) {
+      return -1;
+    }
+    int i = start + Character.charCount(c);
+    while (i < text.length() && WORD_IN_CODE_SPAN_END.indexOf(text.charAt(i)) == -1) {
+      i++;
+    }
+    return i;
+  }
 
   // We ensure elsewhere that we match this only at the beginning of a line.
   // Only match tags that start with a lowercase letter, to avoid false matches on unescaped
   // annotations inside code blocks.
   // Match "@param <T>" specially in case the <T> is a <P> or other HTML tag we treat specially.
-  private static final Pattern FOOTER_TAG_PATTERN = compile("@(param\\s+<\\w+>|[a-z]\\w*)");
-  private static final Pattern MOE_BEGIN_STRIP_COMMENT_PATTERN =
-      compile("<!--\\s*M" + "OE:begin_intracomment_strip\\s*-->");
-  private static final Pattern MOE_END_STRIP_COMMENT_PATTERN =
-      compile("<!--\\s*M" + "OE:end_intracomment_strip\\s*-->");
-  private static final Pattern HTML_COMMENT_PATTERN = compile("<!--.*?-->", DOTALL);
-  private static final Pattern PRE_OPEN_PATTERN = openTagPattern("pre");
-  private static final Pattern PRE_CLOSE_PATTERN = closeTagPattern("pre");
-  private static final Pattern CODE_OPEN_PATTERN = openTagPattern("code");
-  private static final Pattern CODE_CLOSE_PATTERN = closeTagPattern("code");
-  private static final Pattern TABLE_OPEN_PATTERN = openTagPattern("table");
-  private static final Pattern TABLE_CLOSE_PATTERN = closeTagPattern("table");
-  private static final Pattern LIST_OPEN_PATTERN = openTagPattern("ul|ol|dl");
-  private static final Pattern LIST_CLOSE_PATTERN = closeTagPattern("ul|ol|dl");
-  private static final Pattern LIST_ITEM_OPEN_PATTERN = openTagPattern("li|dt|dd");
-  private static final Pattern LIST_ITEM_CLOSE_PATTERN = closeTagPattern("li|dt|dd");
-  private static final Pattern HEADER_OPEN_PATTERN = openTagPattern("h[1-6]");
-  private static final Pattern HEADER_CLOSE_PATTERN = closeTagPattern("h[1-6]");
-  private static final Pattern PARAGRAPH_OPEN_PATTERN = openTagPattern("p");
-  private static final Pattern PARAGRAPH_CLOSE_PATTERN = closeTagPattern("p");
-  private static final Pattern BLOCKQUOTE_OPEN_PATTERN = openTagPattern("blockquote");
-  private static final Pattern BLOCKQUOTE_CLOSE_PATTERN = closeTagPattern("blockquote");
-  private static final Pattern BR_PATTERN = openTagPattern("br");
-  private static final Pattern SNIPPET_TAG_OPEN_PATTERN = compile("[{]@snippet\\b");
-  private static final Pattern INLINE_TAG_OPEN_PATTERN = compile("[{]@\\w*");
-  private static final Pattern WORD_IN_CODE_SPAN_PATTERN = compile(".[^ \t\n`]*");
-  private static final Pattern MARKDOWN_HARD_LINE_BREAK_PATTERN = compile("\\\\[ \t]*\n");
-  private static final Pattern BACKSLASH_PLUS_CHARACTER_PATTERN = compile("\\\\.");
+  /** {@code @(param\s+<\w+>|[a-z]\w*)}. */
+  private static int footerTagEnd(String text, int start) {
+    if (!text.startsWith("@", start)) {
+      return -1;
+    }
+    if (text.startsWith("param", start + 1)) {
+      int typeParameter = start + "@param".length();
+      while (typeParameter < text.length() && isRegexWhitespace(text.charAt(typeParameter))) {
+        typeParameter++;
+      }
+      if (typeParameter > start + "@param".length() && text.startsWith("<", typeParameter)) {
+        int end = skipWordCharacters(text, typeParameter + 1);
+        if (end > typeParameter + 1 && text.startsWith(">", end)) {
+          return end + 1;
+        }
+      }
+    }
+    if (start + 1 == text.length() || !isLowerCaseLetter(text.charAt(start + 1))) {
+      return -1;
+    }
+    return skipWordCharacters(text, start + 2);
+  }
+
+  /** <code>[{]@snippet\b</code>. */
+  private static int snippetTagOpenEnd(String text, int start) {
+    int end = start + "{@snippet".length();
+    return text.startsWith("{@snippet", start) && isWordBoundary(text, end) ? end : -1;
+  }
+
+  /** <code>[{]@\w*</code>. */
+  private static int inlineTagOpenEnd(String text, int start) {
+    return text.startsWith("{@", start) ? skipWordCharacters(text, start + 2) : -1;
+  }
+
+  /** {@code <(?:name1|name2|...)\b[^>]*>}, ignoring case. */
+  private static int openTagEnd(String text, int start, String... names) {
+    return text.startsWith("<", start) ? tagEnd(text, start + 1, names) : -1;
+  }
+
+  /** {@code </(?:name1|name2|...)\b[^>]*>}, ignoring case. */
+  private static int closeTagEnd(String text, int start, String... names) {
+    return text.startsWith("</", start) ? tagEnd(text, start + 2, names) : -1;
+  }
+
+  private static int tagEnd(String text, int nameStart, String[] names) {
+    for (String name : names) {
+      int nameEnd = nameStart + name.length();
+      if (nameEnd <= text.length()
+          && equalsIgnoringAsciiCase(text, nameStart, name)
+          && isWordBoundary(text, nameEnd)) {
+        int end = text.indexOf('>', nameEnd);
+        return end == -1 ? -1 : end + 1;
+      }
+    }
+    return -1;
+  }
+
+  /** {@code <!--\s*MOE:..._intracomment_strip\s*-->}. */
+  private static int moeStripCommentEnd(String text, int start, String directive) {
+    if (!text.startsWith("<!--", start)) {
+      return -1;
+    }
+    int i = skipRegexWhitespace(text, start + "<!--".length());
+    if (!text.startsWith(directive, i)) {
+      return -1;
+    }
+    i = skipRegexWhitespace(text, i + directive.length());
+    return text.startsWith("-->", i) ? i + "-->".length() : -1;
+  }
+
+  /** {@code <!--.*?-->}, with DOTALL. */
+  private static int htmlCommentEnd(String text, int start) {
+    if (!text.startsWith("<!--", start)) {
+      return -1;
+    }
+    int end = text.indexOf("-->", start + "<!--".length());
+    return end == -1 ? -1 : end + "-->".length();
+  }
+
+  /**
+   * The end of a "literal", something that does not have any special formatting meaning. This
+   * doesn't have to be a maximal sequence of literal characters, since adjacent literals will be
+   * joined together in a later step.
+   */
+  private int literalEnd(int start) {
+    return classicJavadoc ? classicLiteralEnd(text, start) : markdownLiteralEnd(text, start);
+  }
 
   /*
    * We exclude < so that we don't swallow following HTML tags. This lets us fix up "foo<p>" (~400
@@ -713,29 +821,95 @@ final class JavadocLexer {
    *
    * TODO(cpovirk): might not need to exclude @ or *.
    */
-  private static final Pattern CLASSIC_LITERAL_PATTERN = compile(".[^ \t\n@<{}*]*", DOTALL);
+  /** {@code .[^ \t\n@<{}*]*}, with DOTALL. */
+  private static int classicLiteralEnd(String text, int start) {
+    int i = start + Character.charCount(text.codePointAt(start));
+    while (i < text.length() && CLASSIC_LITERAL_END.indexOf(text.charAt(i)) == -1) {
+      i++;
+    }
+    return i;
+  }
 
   /*
    * Many characters have special meaning in Markdown. Rather than list them all, we'll just match
    * a sequence of alphabetic characters. Even digits can have special meaning, for numbered lists.
    */
-  private static final Pattern MARKDOWN_LITERAL_PATTERN = compile(".\\p{IsAlphabetic}*", DOTALL);
+  /** {@code .\p{IsAlphabetic}*}, with DOTALL. */
+  private static int markdownLiteralEnd(String text, int start) {
+    int i = start + Character.charCount(text.codePointAt(start));
+    while (i < text.length()) {
+      int c = text.codePointAt(i);
+      if (!Character.isAlphabetic(c)) {
+        break;
+      }
+      i += Character.charCount(c);
+    }
+    return i;
+  }
 
-  /**
-   * The pattern used for "literals", things that do not have any special formatting meaning. This
-   * doesn't have to be a maximal sequence of literal characters, since adjacent literals will be
-   * joined together in a later step.
-   */
-  private Pattern literalPattern() {
-    return classicJavadoc ? CLASSIC_LITERAL_PATTERN : MARKDOWN_LITERAL_PATTERN;
+  private static final String WORD_IN_CODE_SPAN_END = " \t\n`";
+  private static final String CLASSIC_LITERAL_END = " \t\n@<{}*";
+  private static final String[] HEADERS = {"h1", "h2", "h3", "h4", "h5", "h6"};
+  private static final String MOE_BEGIN_STRIP_COMMENT = "M" + "OE:begin_intracomment_strip";
+  private static final String MOE_END_STRIP_COMMENT = "M" + "OE:end_intracomment_strip";
+
+  /** Whether a code point is a line terminator, which a regular expression's `.` doesn't match. */
+  private static boolean isLineTerminator(int c) {
+    return c == '\n' || c == '\r' || c == 0x85 || c == 0x2028 || c == 0x2029;
   }
 
-  private static Pattern openTagPattern(String namePattern) {
-    return compile(format("<(?:%s)\\b[^>]*>", namePattern), CASE_INSENSITIVE);
+  /** {@code \w}. */
+  private static boolean isWordCharacter(char c) {
+    return isLowerCaseLetter(c) || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
   }
 
-  private static Pattern closeTagPattern(String namePattern) {
-    return compile(format("</(?:%s)\\b[^>]*>", namePattern), CASE_INSENSITIVE);
+  private static boolean isLowerCaseLetter(char c) {
+    return c >= 'a' && c <= 'z';
+  }
+
+  /** {@code \s}. */
+  private static boolean isRegexWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+  }
+
+  /** {@code \b}, after a word character. */
+  private static boolean isWordBoundary(String text, int i) {
+    return i == text.length() || !isWordCharacter(text.charAt(i));
+  }
+
+  private static int skipWordCharacters(String text, int i) {
+    while (i < text.length() && isWordCharacter(text.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static int skipRegexWhitespace(String text, int i) {
+    while (i < text.length() && isRegexWhitespace(text.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static int skipSpacesAndTabs(String text, int i) {
+    while (i < text.length() && (text.charAt(i) == ' ' || text.charAt(i) == '\t')) {
+      i++;
+    }
+    return i;
+  }
+
+  /** Whether the text at {@code start} is {@code lowerCase}, ignoring the case of ASCII letters. */
+  private static boolean equalsIgnoringAsciiCase(String text, int start, String lowerCase) {
+    for (int i = 0; i < lowerCase.length(); i++) {
+      char c = text.charAt(start + i);
+      if (c >= 'A' && c <= 'Z') {
+        c = (char) (c + ('a' - 'A'));
+      }
+      if (c != lowerCase.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   static class LexException extends Exception {
@@ -16,6 +16,7 @@ package com.google.googlejavaformat.java;
 
 import static com.google.common.truth.Truth.assertThat;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Range;
@@ -209,4 +210,44 @@ public class CommandLineOptionsParserTest {
                 .reorderModifiers())
         .isFalse();
   }
+
+  @Test
+  public void cacheDir() {
+    assertThat(
+            CommandLineOptionsParser.parse(Arrays.asList("--cache-dir", "/tmp/cache", "Foo.java"))
+                .cacheDir())
+        .hasValue("/tmp/cache");
+    assertThat(CommandLineOptionsParser.parse(Arrays.asList("Foo.java")).cacheDir()).isEmpty();
+  }
+
+  @Test
+  public void includesAndExcludes() {
+    CommandLineOptions options =
+        CommandLineOptionsParser.parse(
+            Arrays.asList(
+                "--include=**.java", "--exclude", "gen/**", "--exclude=**Test.java", "src"));
+    assertThat(options.includes()).containsExactly("**.java");
+    assertThat(options.excludes()).containsExactly("gen/**", "**Test.java").inOrder();
+  }
+
+  @Test
+  public void invalidGlob() {
+    IllegalArgumentException e =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> CommandLineOptionsParser.parse(Arrays.asList("--include=a{", "src")));
+    assertThat(e).hasMessageThat().contains("invalid glob for --include: a{");
+  }
+
+  @Test
+  public void threads() {
+    CommandLineOptions options =
+        CommandLineOptionsParser.parse(
+            Arrays.asList("--threads=4", "--io-threads", "64", "Foo.java"));
+    assertThat(options.threads()).hasValue(4);
+    assertThat(options.ioThreads()).hasValue(64);
+    options = CommandLineOptionsParser.parse(Arrays.asList("Foo.java"));
+    assertThat(options.threads()).isEmpty();
+    assertThat(options.ioThreads()).isEmpty();
+  }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** {@link FormatCache}Test */
+@RunWith(JUnit4.class)
+public class FormatCacheTest {
+
+  @Rule public TemporaryFolder testFolder = new TemporaryFolder();
+
+  private FormatCache create(Path directory, int maxEntries, String... flags) throws Exception {
+    return FormatCache.create(
+        directory,
+        maxEntries,
+        CommandLineOptionsParser.parse(ImmutableList.copyOf(flags)),
+        JavaFormatterOptions.defaultOptions());
+  }
+
+  @Test
+  public void hitAndMiss() throws Exception {
+    Path directory = testFolder.getRoot().toPath().resolve("cache");
+    FormatCache cache = create(directory, 10);
+    byte[] contents = "class T {}\n".getBytes(UTF_8);
+    assertThat(cache.isFormatted(contents)).isFalse();
+    cache.markFormatted(contents);
+    cache.markFormatted(contents);
+    assertThat(cache.isFormatted(contents)).isTrue();
+    assertThat(cache.isFormatted("class U {}\n".getBytes(UTF_8))).isFalse();
+  }
+
+  @Test
+  public void keyedByOptions() throws Exception {
+    Path directory = testFolder.getRoot().toPath().resolve("cache");
+    byte[] contents = "class T {}\n".getBytes(UTF_8);
+    create(directory, 10).markFormatted(contents);
+    assertThat(create(directory, 10).isFormatted(contents)).isTrue();
+    assertThat(create(directory, 10, "--skip-sorting-imports").isFormatted(contents)).isFalse();
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsed() throws Exception {
+    Path directory = testFolder.getRoot().toPath().resolve("cache");
+    FormatCache cache = create(directory, 2);
+    byte[] a = "class A {}\n".getBytes(UTF_8);
+    byte[] b = "class B {}\n".getBytes(UTF_8);
+    byte[] c = "class C {}\n".getBytes(UTF_8);
+    cache.markFormatted(a);
+    cache.markFormatted(b);
+    cache.markFormatted(c);
+    try (Stream<Path> entries = Files.list(directory)) {
+      entries.forEach(
+          entry -> {
+            try {
+              Files.setLastModifiedTime(entry, FileTime.fromMillis(0));
+            } catch (Exception e) {
+              throw new AssertionError(e);
+            }
+          });
+    }
+    // Refresh a and c, so b is the least recently used.
+    assertThat(cache.isFormatted(a)).isTrue();
+    assertThat(cache.isFormatted(c)).isTrue();
+
+    cache.evict();
+
+    try (Stream<Path> entries = Files.list(directory)) {
+      assertThat(entries.count()).isEqualTo(2);
+    }
+    assertThat(cache.isFormatted(a)).isTrue();
+    assertThat(cache.isFormatted(b)).isFalse();
+    assertThat(cache.isFormatted(c)).isTrue();
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.googlejavaformat.java.FormatStats.Phase;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link FormatStats}. */
+@RunWith(JUnit4.class)
+public class FormatStatsTest {
+
+  private final List<FormatStats> stats = new ArrayList<>();
+  private final Formatter formatter =
+      new Formatter(JavaFormatterOptions.builder().statsListener(stats::add).build());
+
+  @Test
+  public void formatSource() throws Exception {
+    String input = "/** A. */ class A {int x; void f() {}}";
+    formatter.formatSource(input);
+
+    FormatStats result = stats.get(0);
+    assertThat(stats).hasSize(1);
+    assertThat(result.inputLength()).isEqualTo(input.length());
+    assertThat(result.tokens()).isGreaterThan(10);
+    assertThat(result.docs()).isGreaterThan(result.tokens());
+    assertThat(result.replacements()).isGreaterThan(0);
+    assertThat(result.phaseTimes().keySet())
+        .containsAtLeast(
+            Phase.LEX,
+            Phase.PARSE,
+            Phase.BUILD_OPS,
+            Phase.BUILD_DOC,
+            Phase.COMPUTE_BREAKS,
+            Phase.FORMAT_JAVADOC,
+            Phase.WRITE,
+            Phase.REPLACEMENTS)
+        .inOrder();
+    assertThat(result.phaseTimes()).doesNotContainKey(Phase.FIX_IMPORTS);
+    assertThat(result.totalTime())
+        .isEqualTo(result.phaseTimes().values().stream().reduce((a, b) -> a.plus(b)).get());
+  }
+
+  @Test
+  public void nestedFormattingIsRecordedOnce() throws Exception {
+    String longString = "x".repeat(120);
+    formatter.formatSourceAndFixImports(
+        "import java.util.List; class A { String s = \"" + longString + "\"; }");
+
+    // The string wrapper formats the input again, which is recorded as part of the same input.
+    assertThat(stats).hasSize(1);
+    assertThat(stats.get(0).phaseTimes().keySet())
+        .containsAtLeast(Phase.FIX_IMPORTS, Phase.WRAP_STRINGS, Phase.VERIFY_WRAPPED_STRINGS);
+  }
+
+  @Test
+  public void noListener() throws Exception {
+    new Formatter().formatSource("class A {}");
+    assertThat(StatsRecorder.recording()).isFalse();
+  }
+}
@@ -14,15 +14,19 @@
 
 package com.google.googlejavaformat.java;
 
+import static com.google.common.collect.Iterables.getLast;
 import static com.google.common.collect.MoreCollectors.toOptional;
 import static com.google.common.io.Files.getFileExtension;
 import static com.google.common.io.Files.getNameWithoutExtension;
+import static java.lang.Math.min;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Range;
 import com.google.common.io.CharStreams;
 import com.google.common.reflect.ClassPath;
 import com.google.common.reflect.ClassPath.ResourceInfo;
@@ -33,9 +37,11 @@ import java.io.InputStreamReader;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 import java.util.TreeMap;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -128,6 +134,56 @@ public class FormatterIntegrationTest {
     }
   }
 
+  @Test
+  public void splitTopLevelTypes() {
+    FormatFileCallable callable =
+        new FormatFileCallable(
+            CommandLineOptionsParser.parse(ImmutableList.of()),
+            Paths.get(name + ".java"),
+            input,
+            JavaFormatterOptions.defaultOptions());
+    List<String> formattedChunks =
+        callable.splitTopLevelTypes().stream().map(callable::formatChunk).toList();
+    assertEquals(
+        "bad output for " + name,
+        callable.call().output(),
+        callable.join(formattedChunks).output());
+  }
+
+  /**
+   * Checks that formatting a few lines by laying out only the members that contain them (see {@link
+   * MemberRegions}) gives the same replacements as laying out the whole compilation unit.
+   */
+  @Test
+  public void partialFormattingMatchesWholeUnit() throws FormatterException {
+    List<Integer> lineStarts = new ArrayList<>();
+    Iterator<Integer> offsets = Newlines.lineOffsetIterator(input);
+    while (offsets.hasNext()) {
+      lineStarts.add(offsets.next());
+    }
+    if (getLast(lineStarts) < input.length()) {
+      lineStarts.add(input.length());
+    }
+    int lines = lineStarts.size() - 1;
+    Formatter formatter = new Formatter();
+    Random random = new Random(name.hashCode());
+    for (int i = 0; i < 40; i++) {
+      // One or two ranges of one to three lines each.
+      ImmutableList.Builder<Range<Integer>> builder = ImmutableList.builder();
+      int count = 1 + random.nextInt(2);
+      for (int j = 0; j < count; j++) {
+        int first = random.nextInt(lines);
+        int last = min(lines, first + 1 + random.nextInt(3));
+        builder.add(Range.closedOpen(lineStarts.get(first), lineStarts.get(last)));
+      }
+      ImmutableList<Range<Integer>> ranges = builder.build();
+      assertEquals(
+          "bad replacements for " + name + " in " + ranges,
+          formatter.getFormatReplacementsFromWholeUnit(new JavaInput(input), ranges),
+          formatter.getFormatReplacements(new JavaInput(input), ranges));
+    }
+  }
+
   @Test
   public void idempotent() {
     try {
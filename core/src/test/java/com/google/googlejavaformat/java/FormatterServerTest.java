@@ -0,0 +1,131 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.googlejavaformat.java.FormatterServer.Response;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link FormatterServer}. */
+@RunWith(JUnit4.class)
+public class FormatterServerTest {
+
+  @Rule public TemporaryFolder testFolder = new TemporaryFolder();
+
+  private Path socket;
+  private FormatterServer server;
+  private Thread serverThread;
+
+  @Before
+  public void startServer() throws Exception {
+    socket = testFolder.getRoot().toPath().resolve("gjf.sock");
+    server = FormatterServer.start(socket);
+    serverThread = new Thread(server::serve);
+    serverThread.start();
+  }
+
+  @After
+  public void stopServer() throws Exception {
+    server.close();
+    serverThread.join();
+  }
+
+  @Test
+  public void stdin() throws Exception {
+    Response response =
+        FormatterServer.request(
+            socket, testFolder.getRoot().toPath(), ImmutableList.of("-"), "class T {int x;}");
+    assertThat(response.exitCode()).isEqualTo(0);
+    assertThat(response.stdout()).isEqualTo("class T {\n  int x;\n}\n");
+    assertThat(response.stderr()).isEmpty();
+  }
+
+  @Test
+  public void relativeFileInPlace() throws Exception {
+    Path dir = testFolder.newFolder("src").toPath();
+    Path path = dir.resolve("T.java");
+    Files.writeString(path, "class T {int x;}");
+    Response response =
+        FormatterServer.request(socket, dir, ImmutableList.of("-i", "T.java"), "");
+    assertThat(response.exitCode()).isEqualTo(0);
+    assertThat(new String(Files.readAllBytes(path), UTF_8))
+        .isEqualTo("class T {\n  int x;\n}\n");
+  }
+
+  @Test
+  public void dryRunPrintsRelativePath() throws Exception {
+    Path dir = testFolder.newFolder("src").toPath();
+    Files.writeString(dir.resolve("T.java"), "class T {int x;}");
+    Response response =
+        FormatterServer.request(
+            socket, dir, ImmutableList.of("--dry-run", "--set-exit-if-changed", "T.java"), "");
+    assertThat(response.exitCode()).isEqualTo(1);
+    assertThat(response.stdout()).isEqualTo("T.java\n");
+  }
+
+  @Test
+  public void usageError() throws Exception {
+    Response response =
+        FormatterServer.request(
+            socket, testFolder.getRoot().toPath(), ImmutableList.of("--nope"), "");
+    assertThat(response.exitCode()).isEqualTo(2);
+    assertThat(response.stderr()).contains("unexpected flag: --nope");
+  }
+
+  @Test
+  public void socketIsPrivate() throws Exception {
+    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(socket)))
+        .isEqualTo("rw-------");
+  }
+
+  @Test
+  public void doesNotReplaceLiveSocket() throws Exception {
+    assertThrows(FileAlreadyExistsException.class, () -> FormatterServer.start(socket));
+    Response response =
+        FormatterServer.request(
+            socket, testFolder.getRoot().toPath(), ImmutableList.of("-"), "class T {}");
+    assertThat(response.exitCode()).isEqualTo(0);
+  }
+
+  @Test
+  public void doesNotDeleteOtherFiles() throws Exception {
+    Path path = testFolder.newFile("T.java").toPath();
+    Files.writeString(path, "class T {}");
+    assertThrows(FileAlreadyExistsException.class, () -> FormatterServer.start(path));
+    assertThat(Files.readString(path)).isEqualTo("class T {}");
+  }
+
+  @Test
+  public void replacesStaleSocket() throws Exception {
+    Path stale = testFolder.getRoot().toPath().resolve("stale.sock");
+    FormatterServer.start(stale).close();
+    FormatterServer restarted = FormatterServer.start(stale);
+    restarted.close();
+  }
+}
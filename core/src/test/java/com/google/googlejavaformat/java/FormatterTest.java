@@ -19,6 +19,8 @@ import static com.google.common.truth.Truth.assertWithMessage;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertThrows;
 
+import com.google.common.io.CharSink;
+import com.google.common.io.CharSource;
 import com.google.common.io.CharStreams;
 import com.google.googlejavaformat.java.JavaFormatterOptions.Style;
 import java.io.ByteArrayInputStream;
@@ -27,8 +29,10 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.FutureTask;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -72,6 +76,16 @@ public final class FormatterTest {
     assertThat(out.toString()).isEqualTo(expectedOutput);
   }
 
+  @Test
+  public void parseErrorIsReportedAgain() throws Exception {
+    JavaInput javaInput = new JavaInput("class A { void f() { int x = } }");
+    FormatterException first =
+        assertThrows(FormatterException.class, () -> Formatter.parse(javaInput));
+    FormatterException second =
+        assertThrows(FormatterException.class, () -> Formatter.parse(javaInput));
+    assertThat(second.diagnostics()).isEqualTo(first.diagnostics());
+  }
+
   @Test
   public void testFormatNonJavaFiles() throws Exception {
     StringWriter out = new StringWriter();
@@ -669,4 +683,62 @@ class T {
             }
             """);
   }
+
+  @Test
+  public void deeplyNestedExpressions() throws Exception {
+    // Long chains of binary operators and method calls are deeply nested on the left, and used to
+    // need a large stack to format.
+    StringBuilder sum = new StringBuilder("class T {\n  String s =\n      \"\"");
+    StringBuilder chain = new StringBuilder("class T {\n  Object o =\n      builder()");
+    for (int i = 0; i < 20_000; i++) {
+      sum.append("\n          + operandNumber").append(i);
+      chain.append("\n          .m").append(i).append("()");
+    }
+    for (String input : new String[] {sum + ";\n}\n", chain + ";\n}\n"}) {
+      FutureTask<String> task = new FutureTask<>(() -> new Formatter().formatSource(input));
+      Thread thread = new Thread(null, task, "format", 256 * 1024);
+      thread.start();
+      assertThat(task.get()).isEqualTo(input);
+    }
+  }
+
+  @Test
+  public void formatSourceToSink() throws Exception {
+    String input = "class T {\r\nint x;\r\n  void f() {}}\r\n";
+    StringWriter output = new StringWriter();
+    new Formatter()
+        .formatSource(
+            CharSource.wrap(input),
+            new CharSink() {
+              @Override
+              public Writer openStream() {
+                return output;
+              }
+            });
+    assertThat(output.toString()).isEqualTo(new Formatter().formatSource(input));
+
+    // The sink isn't opened if the input can't be formatted.
+    CharSink unopenable =
+        new CharSink() {
+          @Override
+          public Writer openStream() {
+            throw new AssertionError();
+          }
+        };
+    assertThrows(
+        FormatterException.class,
+        () -> new Formatter().formatSource(CharSource.wrap("class {"), unopenable));
+  }
+
+  @Test
+  public void isFormatted() throws Exception {
+    Formatter formatter = new Formatter();
+    String formatted = "class T {\n  int x;\n}\n";
+    assertThat(formatter.isFormatted(new JavaInput(formatted))).isTrue();
+    assertThat(formatter.isFormatted(new JavaInput("class T {\n  int  x;\n}\n"))).isFalse();
+    assertThat(formatter.isFormatted(new JavaInput("class T {\n  int x;\n}"))).isFalse();
+    assertThat(formatter.isFormatted(new JavaInput(formatted + "\n"))).isFalse();
+    assertThat(formatter.isFormatted(new JavaInput("final public class T {}\n"))).isFalse();
+    assertThat(formatter.isFormatted(new JavaInput(""))).isFalse();
+  }
 }
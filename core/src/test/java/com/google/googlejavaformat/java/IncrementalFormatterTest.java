@@ -0,0 +1,221 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+import com.google.googlejavaformat.Input;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** {@link IncrementalFormatter}Test */
+@RunWith(JUnit4.class)
+public final class IncrementalFormatterTest {
+
+  private static final String INPUT =
+      """
+      package p;
+
+      import java.util.List;
+
+      /** A class. */
+      class A {
+        int x, y;
+        int z;
+
+        /** A documented field. */
+        String s = "hello";
+
+        void f(int a, int b) {
+          if (a > b) {
+            g(a);
+          }
+        }
+
+        private static final List<String> LIST = List.of("one", "two", "three");
+
+        static class B {
+          int b;
+        }
+
+        void g(int a) {}
+
+        enum E {
+          ONE,
+          TWO
+        }
+      }
+
+      interface I {
+        void h();
+      }
+      """;
+
+  private final Formatter formatter = new Formatter();
+
+  @Test
+  public void formatsEditedMember() throws Exception {
+    IncrementalFormatter session = new IncrementalFormatter(formatter, INPUT);
+    int start = INPUT.indexOf("g(a);");
+    session.edit(start, start + "g(a);".length(), "g( a , b ) ;");
+
+    ImmutableList<Replacement> replacements = session.format();
+
+    assertThat(session.getText()).isEqualTo(INPUT.replace("g(a);", "g(a, b);"));
+    assertThat(replacements).hasSize(1);
+    assertThat(session.format()).isEmpty();
+  }
+
+  @Test
+  public void formatsNewMember() throws Exception {
+    IncrementalFormatter session = new IncrementalFormatter(formatter, INPUT);
+    int start = INPUT.indexOf("  int z;");
+    session.edit(start, start, "  void  added ( ) { }\n");
+
+    session.format();
+
+    assertThat(session.getText())
+        .isEqualTo(INPUT.replace("  int z;", "\n  void added() {}\n\n  int z;"));
+  }
+
+  @Test
+  public void formatsEditsOutsideMembers() throws Exception {
+    IncrementalFormatter session = new IncrementalFormatter(formatter, INPUT);
+    int start = INPUT.indexOf("import");
+    session.edit(start, start, "import  java.util.Map ;\n");
+    start = session.getText().indexOf("TWO");
+    session.edit(start, start + "TWO".length(), "TWO( )");
+
+    session.format();
+
+    assertThat(session.getText())
+        .isEqualTo(
+            INPUT.replace("import", "import java.util.Map;\nimport").replace("TWO", "TWO()"));
+  }
+
+  @Test
+  public void syntaxError() throws Exception {
+    IncrementalFormatter session = new IncrementalFormatter(formatter, INPUT);
+    int start = INPUT.indexOf("g(a);");
+    session.edit(start, start, "{");
+
+    FormatterException e = assertThrows(FormatterException.class, session::format);
+    FormatterException expected =
+        assertThrows(FormatterException.class, () -> formatter.formatSource(session.getText()));
+    assertThat(e.diagnostics()).isEqualTo(expected.diagnostics());
+  }
+
+  @Test
+  public void importedTypeAnnotation() throws Exception {
+    String input =
+        """
+        package p;
+
+        import org.jspecify.annotations.Nullable;
+
+        class A {
+          @Nullable Object e;
+
+          void f() {}
+        }
+        """;
+    IncrementalFormatter session = new IncrementalFormatter(formatter, input);
+    int start = input.indexOf("Object e;");
+    session.edit(start, start + "Object e;".length(), "Object  e ;");
+
+    session.format();
+
+    assertThat(session.getText()).isEqualTo(input);
+  }
+
+  @Test
+  public void sameAsFormatter() throws Exception {
+    assertSameAsFormatter(INPUT);
+  }
+
+  @Test
+  public void sameAsFormatterWithAnnotatedFields() throws Exception {
+    assertSameAsFormatter(
+        """
+        package p;
+
+        import org.jspecify.annotations.Nullable;
+
+        class A {
+          @Nullable Object a;
+          @Deprecated int b;
+          int c;
+
+          @Deprecated
+          @SuppressWarnings("unused")
+          int d;
+          int e =
+
+              1;
+          int f;
+
+          void g() {}
+        }
+        """);
+  }
+
+  /**
+   * Makes random whitespace edits, and checks that the session formats them the same way as the
+   * whole-file formatter.
+   */
+  private void assertSameAsFormatter(String input) throws Exception {
+    Random random = new Random(42);
+    IncrementalFormatter session = new IncrementalFormatter(formatter, input);
+    for (int i = 0; i < 100; i++) {
+      Range<Integer> edited = editWhitespace(session, random);
+      String text = session.getText();
+
+      ImmutableList<Replacement> replacements = session.format();
+
+      assertWithMessage(text)
+          .that(replacements)
+          .isEqualTo(formatter.getFormatReplacements(text, ImmutableList.of(edited)));
+      assertThat(session.getText()).isEqualTo(JavaOutput.applyReplacements(text, replacements));
+    }
+  }
+
+  /**
+   * Replaces the whitespace before a random token with different whitespace, and returns the range
+   * of the new whitespace.
+   */
+  private static Range<Integer> editWhitespace(IncrementalFormatter session, Random random)
+      throws FormatterException {
+    ImmutableList<? extends Input.Token> tokens = new JavaInput(session.getText()).getTokens();
+    Input.Token previous;
+    Input.Token token;
+    do {
+      int i = 1 + random.nextInt(tokens.size() - 2);
+      previous = tokens.get(i - 1);
+      token = tokens.get(i);
+    } while (previous.getToksAfter().stream().anyMatch(Input.Tok::isComment)
+        || token.getToksBefore().stream().anyMatch(Input.Tok::isComment));
+    int start = previous.getTok().getPosition() + previous.getTok().length();
+    String whitespace =
+        ImmutableList.of(" ", "  ", "\n", "\n\n\n", "\n      ").get(random.nextInt(5));
+    session.edit(start, token.getTok().getPosition(), whitespace);
+    return Range.closedOpen(start, start + whitespace.length());
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Joiner;
+import com.google.googlejavaformat.java.javadoc.JavadocFormatter;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** {@link JavadocCache}Test */
+@RunWith(JUnit4.class)
+public class JavadocCacheTest {
+
+  private static final String JAVADOC =
+      "/** Returns the sum of {@code a} and {@code b}, which are both very long names for integers"
+          + " that need to be wrapped. */";
+
+  @Test
+  public void hitAndMiss() {
+    JavadocCache cache = JavadocCache.create();
+    String formatted = cache.formatJavadoc(JAVADOC, 2);
+    assertThat(formatted).isEqualTo(JavadocFormatter.formatJavadoc(JAVADOC, 2));
+    assertThat(cache.formatJavadoc(JAVADOC, 2)).isSameInstanceAs(formatted);
+    assertThat(cache.stats().hitCount()).isEqualTo(1);
+    assertThat(cache.stats().missCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void keyedByIndent() {
+    JavadocCache cache = JavadocCache.create();
+    assertThat(cache.formatJavadoc(JAVADOC, 2))
+        .isEqualTo(JavadocFormatter.formatJavadoc(JAVADOC, 2));
+    assertThat(cache.formatJavadoc(JAVADOC, 40))
+        .isEqualTo(JavadocFormatter.formatJavadoc(JAVADOC, 40));
+    assertThat(cache.stats().missCount()).isEqualTo(2);
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void boundedByCharacters() {
+    JavadocCache cache = JavadocCache.create(4L * JAVADOC.length());
+    for (int indent = 0; indent < 10; indent += 2) {
+      cache.formatJavadoc(JAVADOC, indent);
+    }
+    assertThat(cache.stats().evictionCount()).isGreaterThan(0);
+    assertThat(cache.size()).isLessThan(5);
+  }
+
+  @Test
+  public void sharedBetweenFormatters() throws Exception {
+    JavadocCache cache = JavadocCache.create();
+    JavaFormatterOptions options = JavaFormatterOptions.builder().javadocCache(cache).build();
+    String input =
+        Joiner.on('\n')
+            .join(
+                "class T {",
+                "  /** Does something. */",
+                "  void f() {}",
+                "  /** Does something. */",
+                "  void g() {}",
+                "}",
+                "");
+    String output = new Formatter(options).formatSource(input);
+    assertThat(output).isEqualTo(new Formatter().formatSource(input));
+    assertThat(new Formatter(options).formatSource(input)).isEqualTo(output);
+    assertThat(cache.stats().missCount()).isEqualTo(1);
+    assertThat(cache.stats().hitCount()).isAtLeast(3);
+  }
+}
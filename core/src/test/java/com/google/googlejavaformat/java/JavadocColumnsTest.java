@@ -0,0 +1,80 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.googlejavaformat.Input;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** {@link JavadocColumns}Test */
+@RunWith(JUnit4.class)
+public class JavadocColumnsTest {
+
+  private static ImmutableMap<Input.Tok, Integer> predict(String source, int indentationMultiplier)
+      throws FormatterException {
+    JavaInput javaInput = new JavaInput(source);
+    return JavadocColumns.predict(javaInput, Formatter.parse(javaInput), indentationMultiplier);
+  }
+
+  @Test
+  public void predictsFormattedColumns() throws Exception {
+    String source =
+        """
+        /** T. */
+        class T {
+          /** X. */
+          @Deprecated int x;
+
+          /** E. */
+          enum E {
+            /** A. */
+            A
+          }
+
+          /** F. */
+          void f() {
+            /** Local. */
+            class Local {}
+          }
+        }
+        """;
+    ImmutableMap<Input.Tok, Integer> columns = predict(source, 1);
+    assertThat(columns.keySet().stream().map(Input.Tok::getText))
+        .containsExactly("/** T. */", "/** X. */", "/** E. */", "/** A. */", "/** F. */")
+        .inOrder();
+    for (Map.Entry<Input.Tok, Integer> entry : columns.entrySet()) {
+      assertThat(entry.getValue()).isEqualTo(entry.getKey().getColumn());
+    }
+  }
+
+  @Test
+  public void aosp() throws Exception {
+    String source =
+        """
+        class T {
+            interface I {
+                /** F. */
+                void f();
+            }
+        }
+        """;
+    assertThat(predict(source, 2).values()).containsExactly(8);
+  }
+}
@@ -20,6 +20,7 @@ import static com.google.common.truth.TruthJUnit.assume;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.io.ByteStreams;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -2506,6 +2507,28 @@ package com.example;
     doFormatTest(input, expected);
   }
 
+  @Test
+  public void manyComments() throws Exception {
+    // Enough comments to be formatted in parallel, ahead of the layout, given an executor.
+    StringBuilder input = new StringBuilder("class Test {\ninterface Inner {\n");
+    StringBuilder expected = new StringBuilder("class Test {\n  interface Inner {\n");
+    for (int i = 0; i < 2 * JavaCommentsHelper.MIN_PREFORMATTED_JAVADOC_COMMENTS; i++) {
+      input.append("/**   Returns ").append(i).append(".   */\nint f").append(i).append("();\n");
+      if (i > 0) {
+        expected.append("\n");
+      }
+      expected.append("    /** Returns ").append(i).append(". */\n");
+      expected.append("    int f").append(i).append("();\n");
+    }
+    input.append("}\n}\n");
+    expected.append("  }\n}\n");
+    doFormatTest(input.toString(), expected.toString());
+    Formatter parallel =
+        new Formatter(
+            JavaFormatterOptions.builder().javadocExecutor(ForkJoinPool.commonPool()).build());
+    assertThat(parallel.formatSource(input.toString())).isEqualTo(expected.toString());
+  }
+
   // TODO: b/346668798 - Test the following Markdown constructs, and make the tests work as needed.
   // We can assume that the CommonMark parser correctly handles Markdown, so the question is whether
   // they are subsequently mishandled by our formatting logic. So for example the CommonMark parser
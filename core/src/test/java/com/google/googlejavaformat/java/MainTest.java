@@ -19,6 +19,9 @@ import static com.google.common.base.StandardSystemProperty.JAVA_HOME;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.ByteStreams;
@@ -33,9 +36,14 @@ import java.lang.ProcessBuilder.Redirect;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.stream.Stream;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -711,4 +719,268 @@ class T {
             .replace("\n", System.lineSeparator());
     assertThat(err.toString()).isEqualTo(expected);
   }
+
+  @Test
+  public void cacheSkipsFormattedFiles() throws Exception {
+    Path cache = testFolder.newFolder("cache").toPath();
+    Path path = testFolder.newFile("Test.java").toPath();
+    Files.writeString(path, "class Test {int x;}");
+
+    StringWriter out = new StringWriter();
+    StringWriter err = new StringWriter();
+    Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in);
+    assertThat(main.format("--cache-dir=" + cache, "-i", path.toString())).isEqualTo(0);
+    assertThat(Files.readString(path)).isEqualTo("class Test {\n  int x;\n}\n");
+
+    // The in-place rewrite was recorded as formatted, so the cache reports a hit for it. To
+    // check that the formatter isn't run, swap the entry's contents for unformatted code.
+    String unformatted = "class Test {int y;}";
+    FormatCache formatCache =
+        FormatCache.create(
+            cache,
+            FormatCache.DEFAULT_MAX_ENTRIES,
+            CommandLineOptionsParser.parse(ImmutableList.of()),
+            JavaFormatterOptions.defaultOptions());
+    assertThat(formatCache.isFormatted(Files.readAllBytes(path))).isTrue();
+    formatCache.markFormatted(unformatted.getBytes(UTF_8));
+    Files.writeString(path, unformatted);
+
+    main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in);
+    assertThat(main.format("--cache-dir=" + cache, "-n", "--set-exit-if-changed", path.toString()))
+        .isEqualTo(0);
+    assertThat(err.toString()).isEmpty();
+  }
+
+  @Test
+  public void inPlaceReplacesFileAtomically() throws Exception {
+    Path root = testFolder.newFolder("src").toPath();
+    Path path = root.resolve("Test.java");
+    Files.writeString(path, "class Test {int x;}");
+    Path link = root.resolve("Link.java");
+    Files.writeString(root.resolve("Target.java"), "class Target {int x;}");
+    Files.createSymbolicLink(link, root.resolve("Target.java"));
+    boolean posix = Files.getFileAttributeView(path, PosixFileAttributeView.class) != null;
+    if (posix) {
+      Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rwxr-x---"));
+    }
+
+    StringWriter out = new StringWriter();
+    StringWriter err = new StringWriter();
+    Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in);
+    assertThat(main.format("-i", path.toString(), link.toString())).isEqualTo(0);
+    assertThat(err.toString()).isEmpty();
+    assertThat(Files.readString(path)).isEqualTo("class Test {\n  int x;\n}\n");
+    assertThat(Files.isSymbolicLink(link)).isTrue();
+    assertThat(Files.readString(root.resolve("Target.java")))
+        .isEqualTo("class Target {\n  int x;\n}\n");
+    if (posix) {
+      assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(path)))
+          .isEqualTo("rwxr-x---");
+    }
+    try (Stream<Path> files = Files.list(root)) {
+      assertThat(files.map(f -> f.getFileName().toString()))
+          .containsExactly("Test.java", "Link.java", "Target.java");
+    }
+  }
+
+  @Test
+  public void directory() throws Exception {
+    Path root = testFolder.newFolder("src").toPath();
+    Files.createDirectories(root.resolve("a/b"));
+    Files.createDirectories(root.resolve("gen"));
+    Files.writeString(root.resolve("A.java"), "class A {int x;}");
+    Files.writeString(root.resolve("a/b/B.java"), "class B {int x;}");
+    Files.writeString(root.resolve("a/BTest.java"), "class BTest {int x;}");
+    Files.writeString(root.resolve("gen/G.java"), "class G {int x;}");
+    Files.writeString(root.resolve("a/README"), "not java");
+
+    StringWriter out = new StringWriter();
+    StringWriter err = new StringWriter();
+    Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in, root);
+    assertThat(main.format("-n", "--exclude=gen/**", ".")).isEqualTo(0);
+    assertThat(out.toString().lines())
+        .containsExactly(
+            Paths.get(".", "A.java").toString(),
+            Paths.get(".", "a", "BTest.java").toString(),
+            Paths.get(".", "a", "b", "B.java").toString());
+    assertThat(err.toString()).isEmpty();
+
+    out = new StringWriter();
+    main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in, root);
+    assertThat(main.format("-i", "--include=**Test.java", "a")).isEqualTo(0);
+    assertThat(Files.readString(root.resolve("a/BTest.java")))
+        .isEqualTo("class BTest {\n  int x;\n}\n");
+    assertThat(Files.readString(root.resolve("a/b/B.java"))).isEqualTo("class B {int x;}");
+    assertThat(err.toString()).isEmpty();
+  }
+
+  @Test
+  public void excludedDirectoriesAreNotListed() throws Exception {
+    Path root = testFolder.newFolder("src").toPath();
+    Files.createDirectories(root.resolve("gen/secret"));
+    Files.writeString(root.resolve("A.java"), "class A {int x;}");
+    Files.writeString(root.resolve("gen/secret/G.java"), "class G {int x;}");
+    assumeTrue(Files.getFileAttributeView(root, PosixFileAttributeView.class) != null);
+    Files.setPosixFilePermissions(
+        root.resolve("gen/secret"), PosixFilePermissions.fromString("---------"));
+    try {
+      // Reading the directory would fail, if it weren't skipped. Root can read it anyway.
+      assumeFalse(Files.isReadable(root.resolve("gen/secret")));
+
+      StringWriter out = new StringWriter();
+      StringWriter err = new StringWriter();
+      Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in, root);
+      assertThat(main.format("-n", "--exclude=gen/**", ".")).isEqualTo(0);
+      assertThat(out.toString().lines()).containsExactly(Paths.get(".", "A.java").toString());
+      assertThat(err.toString()).isEmpty();
+    } finally {
+      Files.setPosixFilePermissions(
+          root.resolve("gen/secret"), PosixFilePermissions.fromString("rwx------"));
+    }
+  }
+
+  @Test
+  public void excludedDirectory() throws Exception {
+    Path root = testFolder.newFolder("src").toPath();
+    Files.createDirectories(root.resolve("out/a"));
+    Files.writeString(root.resolve("A.java"), "class A {int x;}");
+    Files.writeString(root.resolve("out/a/O.java"), "class O {int x;}");
+
+    StringWriter out = new StringWriter();
+    StringWriter err = new StringWriter();
+    Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in, root);
+    assertThat(main.format("-n", "--exclude=out", ".")).isEqualTo(0);
+    assertThat(out.toString().lines()).containsExactly(Paths.get(".", "A.java").toString());
+    assertThat(err.toString()).isEmpty();
+  }
+
+  @Test
+  public void sameFileUnderDifferentNames() throws Exception {
+    Path root = testFolder.newFolder("src").toPath();
+    Files.createDirectories(root.resolve("a"));
+    Files.writeString(root.resolve("a/A.java"), "class A {int x;}");
+
+    StringWriter out = new StringWriter();
+    StringWriter err = new StringWriter();
+    Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in, root);
+    assertThat(main.format("-n", "a", "a/A.java", "./a/A.java", "a/../a/A.java")).isEqualTo(0);
+    assertThat(out.toString().lines()).hasSize(1);
+    assertThat(err.toString()).isEmpty();
+  }
+
+  @Test
+  public void directoryWithLines() throws Exception {
+    Path root = testFolder.newFolder("src").toPath();
+    StringWriter out = new StringWriter();
+    StringWriter err = new StringWriter();
+    Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in);
+    assertThat(main.format("--lines=1", root.toString())).isEqualTo(1);
+    assertThat(err.toString()).contains("partial formatting is not supported for directories");
+  }
+
+  @Test
+  public void manyFilesAreWrittenInOrder() throws Exception {
+    Path root = testFolder.newFolder("src").toPath();
+    List<String> expected = new ArrayList<>();
+    StringBuilder expectedOutput = new StringBuilder();
+    // More files than can be pending at once, in an order that doesn't match their names.
+    for (int i = 99; i >= 0; i--) {
+      String name = String.format("T%02d.java", i);
+      Files.writeString(root.resolve(name), "class T" + i + " {int x;}");
+    }
+    for (int i = 0; i < 100; i++) {
+      expected.add(String.format("T%02d.java", i));
+      expectedOutput.append("class T").append(i).append(" {\n  int x;\n}\n");
+    }
+
+    StringWriter out = new StringWriter();
+    StringWriter err = new StringWriter();
+    Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in, root);
+    assertThat(main.format(expected.reversed().toArray(new String[0]))).isEqualTo(0);
+    assertThat(out.toString()).isEqualTo(expectedOutput.toString());
+    assertThat(err.toString()).isEmpty();
+  }
+
+  @Test
+  public void singleThreaded() throws Exception {
+    Path root = testFolder.newFolder("src").toPath();
+    Files.writeString(root.resolve("A.java"), "class A {int x;}");
+    Files.writeString(root.resolve("B.java"), "class B {int x;}");
+
+    StringWriter out = new StringWriter();
+    StringWriter err = new StringWriter();
+    Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in, root);
+    assertThat(main.format("--threads=1", "--io-threads=1", "-i", "B.java", "A.java", "B.java"))
+        .isEqualTo(0);
+    assertThat(Files.readString(root.resolve("A.java"))).isEqualTo("class A {\n  int x;\n}\n");
+    assertThat(Files.readString(root.resolve("B.java"))).isEqualTo("class B {\n  int x;\n}\n");
+    assertThat(err.toString()).isEmpty();
+  }
+
+  @Test
+  public void invalidThreads() throws Exception {
+    StringWriter out = new StringWriter();
+    StringWriter err = new StringWriter();
+    Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in);
+    UsageException e =
+        assertThrows(UsageException.class, () -> main.format("--io-threads=0", "A.java"));
+    assertThat(e).hasMessageThat().contains("--threads and --io-threads must be positive");
+  }
+
+  @Test
+  public void missingFile() throws Exception {
+    Path root = testFolder.newFolder("src").toPath();
+    Files.writeString(root.resolve("A.java"), "class A {}\n");
+
+    StringWriter out = new StringWriter();
+    StringWriter err = new StringWriter();
+    Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in, root);
+    assertThat(main.format("A.java", "Missing.java")).isEqualTo(1);
+    assertThat(out.toString()).isEqualTo("class A {}\n");
+    assertThat(err.toString()).startsWith("Missing.java: could not read file: ");
+  }
+
+  @Test
+  public void splitLargeFiles() throws Exception {
+    StringBuilder input = new StringBuilder("package p;\nimport java.util.List;\n");
+    for (String name : ImmutableList.of("A", "B", "C")) {
+      input.append("/** Class ").append(name).append(". */\n");
+      input.append("class ").append(name).append(" {\n");
+      for (int i = 0; i < 8000; i++) {
+        input.append("int f").append(i).append("=").append(i).append(";");
+      }
+      input.append("List<String> xs;\n} // end ").append(name).append("\n\n\n");
+    }
+    Path root = testFolder.newFolder("src").toPath();
+    Files.writeString(root.resolve("Large.java"), input);
+
+    StringWriter out = new StringWriter();
+    StringWriter err = new StringWriter();
+    Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in, root);
+    assertThat(main.format("--split-large-files", "Large.java")).isEqualTo(0);
+    assertThat(err.toString()).isEmpty();
+    assertThat(out.toString())
+        .isEqualTo(new Formatter().formatSourceAndFixImports(input.toString()));
+  }
+
+  @Test
+  public void stats() throws Exception {
+    Path root = testFolder.newFolder("src").toPath();
+    Files.writeString(root.resolve("A.java"), "class A {int x;}");
+    Files.writeString(root.resolve("B.java"), "/** B. */ class B {}");
+
+    StringWriter out = new StringWriter();
+    StringWriter err = new StringWriter();
+    Main main = new Main(new PrintWriter(out, true), new PrintWriter(err, true), System.in, root);
+    assertThat(main.format("--stats", "A.java", "B.java")).isEqualTo(0);
+    assertThat(out.toString()).isEqualTo("class A {\n  int x;\n}\n/** B. */\nclass B {}\n");
+    String stats = err.toString();
+    assertThat(stats).startsWith("Formatted 2 files: 36 characters, ");
+    assertThat(stats).containsMatch("(?m)^lex +[0-9.]+ ");
+    assertThat(stats).containsMatch("(?m)^compute breaks +[0-9.]+ ");
+    assertThat(stats).containsMatch("(?m)^format javadoc +[0-9.]+ ");
+    assertThat(stats).containsMatch("(?m)^total +[0-9.]+ +100.0% ");
+    assertThat(stats).containsMatch("(?m)^Javadoc cache: [0-9]+ hits, 1 misses ");
+    assertThat(stats).containsMatch("(?m)Slowest files:\n.* ms  [AB].java\n.* ms  [AB].java\n$");
+  }
 }
@@ -1799,4 +1799,43 @@ public final class PartialFormattingTest {
     String output = runFormatter(input, new String[] {"-offset", "13", "-length", "1"});
     assertThat(output).isEqualTo(expectedOutput);
   }
+
+  @Test
+  public void formatMembers() throws Exception {
+    String input =
+        lines(
+            "package p;",
+            "",
+            "import org.checkerframework.checker.nullness.qual.Nullable;",
+            "",
+            "class Foo {",
+            "  int a = 1",
+            "",
+            "  ;",
+            "int b;",
+            "  @Deprecated int c;",
+            "@Deprecated",
+            "  int d;",
+            "  @Nullable Object e;",
+            "  /** Javadoc. */",
+            "  int f ;",
+            "  void g( ) {",
+            "    h( a , b );",
+            "  }",
+            "  class Bar { int x ; }",
+            "  int h(int a, int b) {",
+            "    return a+b;",
+            "  }",
+            "  int i;",
+            "}",
+            "");
+    Formatter formatter = new Formatter();
+    for (String line : input.split(newline)) {
+      int start = input.indexOf(line);
+      ImmutableList<Range<Integer>> ranges =
+          ImmutableList.of(Range.closedOpen(start, start + line.length() + 1));
+      assertThat(formatter.getFormatReplacements(input, ranges))
+          .isEqualTo(formatter.getFormatReplacementsFromWholeUnit(new JavaInput(input), ranges));
+    }
+  }
 }
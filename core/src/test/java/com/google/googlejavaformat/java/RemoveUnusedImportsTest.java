@@ -295,4 +295,12 @@ public class RemoveUnusedImportsTest {
   public void removeUnused() throws FormatterException {
     assertThat(removeUnusedImports(input)).isEqualTo(expected);
   }
+
+  @Test
+  public void hasUnusedImports() throws FormatterException {
+    assertThat(
+            RemoveUnusedImports.hasUnusedImports(
+                Trees.parse(input, /* allowStringFolding= */ false)))
+        .isEqualTo(!input.equals(expected));
+  }
 }
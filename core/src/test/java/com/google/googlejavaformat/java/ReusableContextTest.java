@@ -0,0 +1,66 @@
+/*
+ * Copyright 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.googlejavaformat.java;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ReusableContext}. */
+@RunWith(JUnit4.class)
+public class ReusableContextTest {
+
+  @Test
+  public void reusedAfterRelease() {
+    ReusableContext first = ReusableContext.acquire();
+    first.release();
+    ReusableContext second = ReusableContext.acquire();
+    assertThat(second).isSameInstanceAs(first);
+    second.release();
+  }
+
+  @Test
+  public void notSharedWhileInUse() {
+    ReusableContext first = ReusableContext.acquire();
+    ReusableContext second = ReusableContext.acquire();
+    assertThat(second).isNotSameInstanceAs(first);
+    second.release();
+    first.release();
+  }
+
+  @Test
+  public void discardedAfterErrors() throws Exception {
+    ReusableContext before = ReusableContext.acquire();
+    before.release();
+    assertThrows(
+        FormatterException.class,
+        () -> Trees.parse("class T {", /* allowStringFolding= */ false));
+    ReusableContext after = ReusableContext.acquire();
+    assertThat(after).isNotSameInstanceAs(before);
+    after.release();
+  }
+
+  @Test
+  public void errorsReportedForManyInputs() throws Exception {
+    // javac's log stops reporting errors after 100 of them, which mustn't carry across inputs.
+    for (int i = 0; i < 200; i++) {
+      assertThrows(FormatterException.class, () -> new Formatter().formatSource("class T {"));
+      assertThat(new Formatter().formatSource("class T {}")).isEqualTo("class T {}\n");
+    }
+  }
+}
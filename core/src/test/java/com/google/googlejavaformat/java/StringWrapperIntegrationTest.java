@@ -441,6 +441,11 @@ class T {
     assertThat(StringWrapper.wrap(40, formatter.formatSource(input), formatter)).isEqualTo(output);
   }
 
+  @Test
+  public void testFormatted() throws Exception {
+    assertThat(StringWrapper.wrapFormatted(40, formatter.formatSource(input))).isEqualTo(output);
+  }
+
   @Test
   public void testCR() throws Exception {
     assertThat(StringWrapper.wrap(40, formatter.formatSource(input.replace('\n', '\r')), formatter))
@@ -15,8 +15,11 @@
 package com.google.googlejavaformat.java;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assume.assumeTrue;
 
+import com.google.common.collect.Range;
+import com.google.common.collect.TreeRangeMap;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -209,4 +212,47 @@ public class ReproBug {
     String actual = StringWrapper.wrap(100, input, new Formatter());
     assertThat(actual).isEqualTo(expected);
   }
+
+  @Test
+  public void verifyReplacements() throws Exception {
+    String input = "class T { String s = \"lorem ipsum\" + x + \"dolor\"; }";
+    int start = input.indexOf('"');
+    int end = input.indexOf(" + x");
+    TreeRangeMap<Integer, String> replacements = TreeRangeMap.create();
+    replacements.put(Range.closedOpen(start, end), "\"lorem\"\n    + \" ipsum\"");
+    StringWrapper.verifyReplacements(input, replacements);
+
+    replacements.put(Range.closedOpen(start, end), "\"lorem\"\n    + \"ipsum\"");
+    assertThrows(
+        FormatterException.class, () -> StringWrapper.verifyReplacements(input, replacements));
+
+    replacements.put(
+        Range.closedOpen(start, input.indexOf(';')), "\"lorem ipsum\" + x\n + \"dolor\"");
+    StringWrapper.verifyReplacements(input, replacements);
+
+    replacements.put(Range.closedOpen(start, input.indexOf(';')), "\"lorem ipsum\" + x + \"dolor");
+    assertThrows(
+        FormatterException.class, () -> StringWrapper.verifyReplacements(input, replacements));
+  }
+
+  @Test
+  public void verifyReplacementsRespectsPrecedence() throws Exception {
+    // "a" + "b".length() isn't "ab".length(), even though the literals are joined by +.
+    String input = "class T { int n = \"ab\".length(); }";
+    int start = input.indexOf('"');
+    TreeRangeMap<Integer, String> replacements = TreeRangeMap.create();
+    replacements.put(Range.closedOpen(start, input.indexOf('.')), "\"a\" + \"b\"");
+    assertThrows(
+        FormatterException.class, () -> StringWrapper.verifyReplacements(input, replacements));
+
+    String cast = "class T { Object o = (Object) \"ab\" + \"cd\"; }";
+    TreeRangeMap<Integer, String> castReplacements = TreeRangeMap.create();
+    castReplacements.put(
+        Range.closedOpen(cast.indexOf('"'), cast.indexOf(';')), "\"a\" + \"b\" + \"cd\"");
+    assertThrows(
+        FormatterException.class, () -> StringWrapper.verifyReplacements(cast, castReplacements));
+    castReplacements.put(
+        Range.closedOpen(cast.indexOf('"'), cast.indexOf(';')), "\"ab\"\n    + \"c\" + \"d\"");
+    StringWrapper.verifyReplacements(cast, castReplacements);
+  }
 }
@@ -0,0 +1,96 @@
+#!/usr/bin/env python3
+#
+# Copyright 2026 Google Inc.
+#
+# Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+# in compliance with the License. You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software distributed under the License
+# is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+# or implied. See the License for the specific language governing permissions and limitations under
+# the License.
+
+"""
+google-java-format client
+=========================
+
+Forwards a google-java-format command line to a running FormatterServer, which
+avoids paying for JVM startup on every invocation. Start the server with:
+
+  java -cp google-java-format-all-deps.jar \\
+      com.google.googlejavaformat.java.FormatterServer \\
+      "$XDG_RUNTIME_DIR/google-java-format.sock"
+
+and then use this script in place of google-java-format:
+
+  google-java-format-client.py \\
+      --socket "$XDG_RUNTIME_DIR/google-java-format.sock" -i Foo.java
+
+The server reads and rewrites files as the user that started it, for anyone who
+can connect to its socket. It makes the socket accessible only to its owner, but
+the socket should still go in a directory that only you can write to, such as
+$XDG_RUNTIME_DIR, rather than a shared one such as /tmp.
+
+All arguments other than --socket are passed through unchanged. The socket can
+also be set with the GOOGLE_JAVA_FORMAT_SOCKET environment variable.
+"""
+
+import os
+import socket
+import struct
+import sys
+
+
+def _write_bytes(sock, data):
+  sock.sendall(struct.pack('>i', len(data)) + data)
+
+
+def _read_exactly(sock, n):
+  data = bytearray()
+  while len(data) < n:
+    chunk = sock.recv(n - len(data))
+    if not chunk:
+      raise EOFError('google-java-format server closed the connection')
+    data.extend(chunk)
+  return bytes(data)
+
+
+def _read_bytes(sock):
+  (length,) = struct.unpack('>i', _read_exactly(sock, 4))
+  return _read_exactly(sock, length)
+
+
+def main():
+  args = sys.argv[1:]
+  path = os.environ.get('GOOGLE_JAVA_FORMAT_SOCKET')
+  if args and args[0].startswith('--socket'):
+    option = args.pop(0)
+    if '=' in option:
+      path = option.split('=', 1)[1]
+    elif args:
+      path = args.pop(0)
+  if not path:
+    sys.exit('error: --socket or GOOGLE_JAVA_FORMAT_SOCKET is required')
+
+  stdin = sys.stdin.buffer.read() if '-' in args else b''
+
+  with socket.socket(socket.AF_UNIX, socket.SOCK_STREAM) as sock:
+    sock.connect(path)
+    _write_bytes(sock, os.getcwd().encode('utf-8'))
+    sock.sendall(struct.pack('>i', len(args)))
+    for arg in args:
+      _write_bytes(sock, arg.encode('utf-8'))
+    _write_bytes(sock, stdin)
+    (exit_code,) = struct.unpack('>i', _read_exactly(sock, 4))
+    stdout = _read_bytes(sock)
+    stderr = _read_bytes(sock)
+
+  sys.stdout.buffer.write(stdout)
+  sys.stderr.buffer.write(stderr)
+  sys.exit(exit_code)
+
+
+if __name__ == '__main__':
+  main()